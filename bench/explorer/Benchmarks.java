@@ -0,0 +1,199 @@
+package explorer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for the per-step work each explorer does: belief correction (updateBeliefs), prediction
+ * (advanceBeliefs), action selection (getAction), sensor selection (getSensorAction) and the optimal explorer's
+ * table (precompBStar), over a range of map sizes. The "Converged" explorer is a dumb one whose beliefs have
+ * already narrowed down to a few cells, which is where sparse beliefs pay off.
+ *
+ * The ones that move the beliefs along (advanceBeliefs and getAction) are timed in batches of BATCH calls, each
+ * starting from the beliefs as they were at the start, so they measure the same first few steps every time rather
+ * than whatever is left after thousands of earlier ones. Putting the beliefs back costs about as much as a step, so
+ * it's done between batches (outside the timing) rather than before every call. Every state has its own action
+ * counter, so benchmarks don't disturb each other. Lives in the same package so it can
+ * get at the package-private update methods. Build with mvn -Pbench package, then run with e.g.
+ *     java -jar target/benchmarks.jar -p size=7,64,512 -p explorer=Dumb,Optimal
+ * @author mathewpaul1
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(2)
+public class Benchmarks {
+
+	/** how many steps the benchmarks that move the beliefs along take from a fresh start */
+	static final int BATCH = 20;
+
+	/** the belief correction the benchmarks call, which each explorer has its own one of */
+	private interface Update {
+		Beliefs apply(int a, int obs);
+	}
+
+	/** An explorer on a map of the given size, with its beliefs as they were when it started */
+	@State(Scope.Thread)
+	public static class Agent {
+		@Param({"Dumb", "Optimal", "Entropic", "Surprise", "Random", "Converged"})
+		public String explorer;
+		/** the map sizes (square), from the gui's 7x7 up */
+		@Param({"7", "16", "32", "64", "128", "256", "512"})
+		public int size;
+
+		Explorer agent;
+		Update update;
+		IntConsumer advance;
+		/** cycles through actions and observations so we don't just do the same thing every time */
+		int step;
+
+		@Setup(Level.Trial)
+		public void makeExplorer() {
+			ExplorerWorld world = world(size);
+			switch(explorer) {
+			case "Dumb":
+				DumbExplorer dumb = new DumbExplorer(world);
+				agent = dumb;
+				update = dumb::updateBeliefs;
+				advance = dumb::advanceBeliefs;
+				break;
+			case "Optimal":
+				OptimalExplorer optimal = new OptimalExplorer(world);
+				optimal.getSensorAction(); // getAction needs the table to be there
+				agent = optimal;
+				update = optimal::updateBeliefs;
+				advance = optimal::advanceBeliefs;
+				break;
+			case "Entropic":
+				EntropicExplorer entropic = new EntropicExplorer(world);
+				agent = entropic;
+				update = entropic::updateBeliefs;
+				advance = entropic::advanceBeliefs;
+				break;
+			case "Surprise":
+				SurpriseExplorer surprise = new SurpriseExplorer(world);
+				agent = surprise;
+				update = surprise::updateBeliefs;
+				advance = surprise::advanceBeliefs;
+				break;
+			case "Random":
+				RandomExplorer random = new RandomExplorer(world);
+				agent = random;
+				update = random::updateBeliefs;
+				advance = random::advanceBeliefs;
+				break;
+			case "Converged":
+				world.beliefCutoff = 1e-12;
+				DumbExplorer converged = new DumbExplorer(world);
+				agent = converged;
+				update = converged::updateBeliefs;
+				advance = converged::advanceBeliefs;
+				break;
+			default:
+				throw new IllegalArgumentException("no explorer called " + explorer);
+			}
+			reset();
+		}
+
+		/** puts the beliefs back how they were at the start */
+		void reset() {
+			BeliefGrid beliefs = (BeliefGrid) agent.getBeliefs();
+			if (explorer.equals("Converged")) {
+				converge(beliefs);
+			} else {
+				beliefs.fill(1);
+				beliefs.normalise();
+			}
+		}
+	}
+
+	/** An Agent that gets its beliefs put back before every batch, for the benchmarks that change them */
+	@State(Scope.Thread)
+	public static class FreshAgent extends Agent {
+		@Setup(Level.Iteration)
+		public void resetBeliefs() {
+			reset();
+		}
+	}
+
+	/** The optimal explorer on its own, for its table */
+	@State(Scope.Thread)
+	public static class Optimal {
+		@Param({"7", "16", "32", "64", "128", "256", "512"})
+		public int size;
+
+		OptimalExplorer optimal;
+
+		@Setup(Level.Trial)
+		public void makeExplorer() {
+			optimal = new OptimalExplorer(world(size));
+		}
+	}
+
+	@Benchmark
+	public double updateBeliefs(Agent s) {
+		int step = s.step++;
+		return s.update.apply(step & 3, step % 3).get(0);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 200, batchSize = BATCH)
+	@Measurement(iterations = 50, batchSize = BATCH)
+	@OperationsPerInvocation(BATCH) // so the score is per step rather than per batch
+	public double advanceBeliefs(FreshAgent s) {
+		s.advance.accept(s.step++ & 3);
+		return s.agent.getBeliefs().get(0);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 200, batchSize = BATCH)
+	@Measurement(iterations = 50, batchSize = BATCH)
+	@OperationsPerInvocation(BATCH) // so the score is per step rather than per batch
+	public int getAction(FreshAgent s) {
+		return s.agent.getAction();
+	}
+
+	@Benchmark
+	public int getSensorAction(Agent s) {
+		return s.agent.getSensorAction();
+	}
+
+	@Benchmark
+	public Object precompBStar(Optimal s) {
+		return s.optimal.precompBStar();
+	}
+
+	/** Puts all the belief in a small block of cells in the middle of the map */
+	private static void converge(BeliefGrid beliefs) {
+		beliefs.fill(0);
+		int w = beliefs.getWidth(), h = beliefs.getHeight();
+		for (int x = w/2 - 2; x < w/2 + 2; x++)
+			for (int y = h/2 - 2; y < h/2 + 2; y++)
+				if (x >= 0 && y >= 0)
+					beliefs.set(x, y, 1);
+		beliefs.normalise();
+	}
+
+	/** same map every time for a given size, so runs can be compared */
+	private static ExplorerWorld world(int size) {
+		return new ExplorerWorld(size, size, 0.3, 0xbe9c4L + size);
+	}
+}
@@ -0,0 +1,142 @@
+package explorer;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The belief kernels written with the (incubating) Vector API, so they use the widest SIMD the machine has
+ * (AVX2, AVX-512...). Each loop does whole vectors then finishes the tail with plain scalar code.
+ *
+ * Sums come out in a different order to the scalar ones (and to each other on machines with different widths),
+ * so they can differ in the last few bits. The explorers count scores that close as ties (ActionValueEvaluator.beats),
+ * so that doesn't change what they do.
+ *
+ * Lives in src-vector, which the pom adds as a second source root (build-helper) and compiles along with src with
+ * --add-modules jdk.incubator.vector, so it ends up in the same jar. Nothing refers to it directly: BeliefKernels.get()
+ * loads it by name, which only works if the jvm was started with the module too, eg.
+ *     java --add-modules jdk.incubator.vector -cp target/explorer-1.0-SNAPSHOT.jar explorer.ExperimentRunner ...
+ * and falls back to the scalar kernels when it can't. -Dexplorer.kernels=scalar forces the scalar ones anyway.
+ * @author mathewpaul1
+ *
+ */
+public class VectorBeliefKernels extends BeliefKernels {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	/**
+	 * Adds up the lanes of v first to last. reduceLanes doesn't promise an order for doubles, so its answer could
+	 * round differently depending on how it got compiled.
+	 */
+	private static double total(DoubleVector v) {
+		double sum = 0;
+		for (int lane = 0; lane < SPECIES.length(); lane++)
+			sum += v.lane(lane);
+		return sum;
+	}
+
+	@Override
+	public String getName() {
+		return "vector (" + SPECIES.vectorBitSize() + " bit)";
+	}
+
+	@Override
+	public double multiply(double[] a, double[] b, double[] out, int[] nonzero) {
+		DoubleVector acc = DoubleVector.zero(SPECIES);
+		int n = 0;
+		int i = 0;
+		for (int bound = SPECIES.loopBound(a.length); i < bound; i += SPECIES.length()) {
+			DoubleVector r = DoubleVector.fromArray(SPECIES, a, i).mul(DoubleVector.fromArray(SPECIES, b, i));
+			r.intoArray(out, i);
+			acc = acc.add(r);
+			n += r.compare(VectorOperators.NE, 0).trueCount();
+		}
+		double sum = total(acc);
+		for (; i < a.length; i++) {
+			out[i] = a[i] * b[i];
+			sum += out[i];
+			if (out[i] != 0)
+				n++;
+		}
+		nonzero[0] = n;
+		return sum;
+	}
+
+	@Override
+	public double dot(double[] a, double[] b) {
+		DoubleVector acc = DoubleVector.zero(SPECIES);
+		int i = 0;
+		for (int bound = SPECIES.loopBound(a.length); i < bound; i += SPECIES.length())
+			acc = DoubleVector.fromArray(SPECIES, a, i).fma(DoubleVector.fromArray(SPECIES, b, i), acc);
+		double sum = total(acc);
+		for (; i < a.length; i++)
+			sum += a[i] * b[i];
+		return sum;
+	}
+
+	@Override
+	public void dot4(double[] a, double[][] fields, double[] out) {
+		double[] f0 = fields[0], f1 = fields[1], f2 = fields[2], f3 = fields[3];
+		DoubleVector s0 = DoubleVector.zero(SPECIES), s1 = s0, s2 = s0, s3 = s0;
+		int i = 0;
+		for (int bound = SPECIES.loopBound(a.length); i < bound; i += SPECIES.length()) {
+			DoubleVector x = DoubleVector.fromArray(SPECIES, a, i);
+			s0 = x.fma(DoubleVector.fromArray(SPECIES, f0, i), s0);
+			s1 = x.fma(DoubleVector.fromArray(SPECIES, f1, i), s1);
+			s2 = x.fma(DoubleVector.fromArray(SPECIES, f2, i), s2);
+			s3 = x.fma(DoubleVector.fromArray(SPECIES, f3, i), s3);
+		}
+		double t0 = total(s0), t1 = total(s1),
+			   t2 = total(s2), t3 = total(s3);
+		for (; i < a.length; i++) {
+			double x = a[i];
+			t0 += x * f0[i];
+			t1 += x * f1[i];
+			t2 += x * f2[i];
+			t3 += x * f3[i];
+		}
+		out[0] = t0;
+		out[1] = t1;
+		out[2] = t2;
+		out[3] = t3;
+	}
+
+	@Override
+	public double sum(double[] a) {
+		DoubleVector acc = DoubleVector.zero(SPECIES);
+		int i = 0;
+		for (int bound = SPECIES.loopBound(a.length); i < bound; i += SPECIES.length())
+			acc = acc.add(DoubleVector.fromArray(SPECIES, a, i));
+		double sum = total(acc);
+		for (; i < a.length; i++)
+			sum += a[i];
+		return sum;
+	}
+
+	@Override
+	public void divide(double[] a, double d) {
+		int i = 0;
+		for (int bound = SPECIES.loopBound(a.length); i < bound; i += SPECIES.length())
+			DoubleVector.fromArray(SPECIES, a, i).div(d).intoArray(a, i);
+		for (; i < a.length; i++)
+			a[i] /= d;
+	}
+
+	@Override
+	public double xlogx(double[] a) {
+		DoubleVector acc = DoubleVector.zero(SPECIES);
+		int i = 0;
+		for (int bound = SPECIES.loopBound(a.length); i < bound; i += SPECIES.length()) {
+			DoubleVector x = DoubleVector.fromArray(SPECIES, a, i);
+			VectorMask<Double> positive = x.compare(VectorOperators.GT, 0);
+			// the log of the non-positive lanes is junk, but they get masked out of the sum
+			acc = acc.add(x.mul(x.lanewise(VectorOperators.LOG)), positive);
+		}
+		double sum = total(acc);
+		for (; i < a.length; i++)
+			if (a[i] > 0)
+				sum += a[i] * Math.log(a[i]);
+		return sum;
+	}
+}
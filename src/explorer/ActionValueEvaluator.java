@@ -0,0 +1,150 @@
+package explorer;
+
+/**
+ * Works out the expected reward of each manipulatory action given some beliefs.
+ *
+ * Because transitions are deterministic the expected reward of action b is just the sum over cells of
+ * our belief in the cell times the reward of the cell's successor under b. The second half of that only
+ * depends on the world, so we precompute it once as a "reward field" per action and scoring an action
+ * becomes a dot product with the beliefs. One of these is shared by everybody in the same world.
+ *
+ * The reward fields take 32 bytes a cell, so they only get built the first time a BeliefGrid (which is that big
+ * anyway) gets scored. Anything else gets its rewards worked out cell by cell as it goes, which is the same sums
+ * without the memory.
+ * @author mathewpaul1
+ *
+ */
+public class ActionValueEvaluator {
+
+	private final ExplorerWorld world;
+	/** Reward fields, indexed [action][cell] with cells flattened as x*h + y (same as the world's successor table).
+	 *  null until a grid wants them. Volatile for the same reason as the world's tables */
+	private volatile double[][] rewardFields;
+	/** height of the world, for flattening */
+	private final int h;
+	/** how far apart two scores can be, relative to their size, and still count as a tie (see beats) */
+	public static final double TIE = 1e-9;
+	/** for the dense dot products */
+	private static final BeliefKernels kernels = BeliefKernels.get();
+
+	public ActionValueEvaluator(ExplorerWorld world) {
+		this.world = world;
+		h = world.getHeight();
+	}
+
+	/** the reward fields, built if they aren't there yet */
+	private double[][] fields() {
+		double[][] fields = rewardFields;
+		if (fields == null) {
+			fields = new double[4][world.getWidth() * h];
+			for (int b = 0; b < fields.length; b++) {
+				int[] succ = world.getSuccessors(b);
+				for (int i = 0; i < succ.length; i++) {
+					fields[b][i] = reward(succ[i]);
+				}
+			}
+			rewardFields = fields;
+		}
+		return fields;
+	}
+
+	/** the reward for being in (flattened) cell i */
+	private double reward(int i) {
+		return world.getReward(i / h, i % h);
+	}
+
+	/**
+	 * Scores all four actions in one pass over the beliefs.
+	 * @param beliefs - beliefs about the current state
+	 * @param values - filled with the expected reward of each action, indexed by action
+	 */
+	public void evaluate(Beliefs beliefs, double[] values) {
+		if (!(beliefs instanceof BeliefGrid)) {
+			evaluateSparse(beliefs, values);
+			return;
+		}
+		double[][] fields = fields();
+		if (beliefs.isDense()) {
+			kernels.dot4(((BeliefGrid) beliefs).cells(), fields, values);
+			return;
+		}
+		double[] north = fields[ExplorerWorld.NORTH], south = fields[ExplorerWorld.SOUTH],
+				 east = fields[ExplorerWorld.EAST], west = fields[ExplorerWorld.WEST];
+		double n = 0, s = 0, e = 0, w = 0;
+		int support = beliefs.supportSize();
+		for (int k = 0; k < support; k++) { // cells outside the support have no belief, so add nothing
+			int i = beliefs.supportCell(k);
+			double bel = beliefs.supportWeight(k);
+			n += bel * north[i];
+			s += bel * south[i];
+			e += bel * east[i];
+			w += bel * west[i];
+		}
+		values[ExplorerWorld.NORTH] = n;
+		values[ExplorerWorld.SOUTH] = s;
+		values[ExplorerWorld.EAST] = e;
+		values[ExplorerWorld.WEST] = w;
+	}
+
+	/** evaluate for beliefs without a grid's worth of memory: the same sums, with the rewards worked out as we go */
+	private void evaluateSparse(Beliefs beliefs, double[] values) {
+		double n = 0, s = 0, e = 0, w = 0;
+		int support = beliefs.supportSize();
+		for (int k = 0; k < support; k++) {
+			int i = beliefs.supportCell(k);
+			double bel = beliefs.supportWeight(k);
+			n += bel * reward(world.successor(ExplorerWorld.NORTH, i));
+			s += bel * reward(world.successor(ExplorerWorld.SOUTH, i));
+			e += bel * reward(world.successor(ExplorerWorld.EAST, i));
+			w += bel * reward(world.successor(ExplorerWorld.WEST, i));
+		}
+		values[ExplorerWorld.NORTH] = n;
+		values[ExplorerWorld.SOUTH] = s;
+		values[ExplorerWorld.EAST] = e;
+		values[ExplorerWorld.WEST] = w;
+	}
+
+	/**
+	 * Picks the action with the greatest expected reward. Ties (to within rounding, see beats) go to whichever
+	 * comes first in actions. If none of them scores better than -infinity (eg. they're all NaN, which is what
+	 * beliefs with no mass left in them give) that's the first action too, and its value gets set to -infinity, so
+	 * callers can always look up values[bstar] and get something they can compare.
+	 * @param beliefs - beliefs about the current state
+	 * @param actions - the actions to choose from
+	 * @param values - scratch space for the values, indexed by action. Holds all the scores afterwards.
+	 * @return the best action, never -1
+	 */
+	public int bestAction(Beliefs beliefs, int[] actions, double[] values) {
+		evaluate(beliefs, values);
+		int bstar = -1;
+		double bstarval = Double.NEGATIVE_INFINITY;
+		for (int b : actions) {
+			if (beats(values[b], bstarval)) {
+				bstar = b;
+				bstarval = values[b];
+			}
+		}
+		if (bstar == -1) {
+			bstar = actions[0];
+			values[bstar] = Double.NEGATIVE_INFINITY;
+		}
+		return bstar;
+	}
+
+	/**
+	 * Is value better than best by more than rounding error? Scores that are really equal (eg. for actions that
+	 * are mirror images of each other) can come out an ulp or two apart, in either direction, depending on the
+	 * order things got added up in. Counting those as ties, which go to whichever candidate came first, means the
+	 * choice doesn't hang on how the sums were done.
+	 */
+	public static boolean beats(double value, double best) {
+		if (Double.isInfinite(value) || Double.isInfinite(best))
+			return value > best;
+		return value - best > TIE * Math.max(Math.abs(value), Math.abs(best));
+	}
+
+	/** Returns the reward field for action b, building them if need be. Don't modify it. */
+	public double[] getRewardField(int b) {
+		return fields()[b];
+	}
+}
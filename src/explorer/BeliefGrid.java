@@ -0,0 +1,488 @@
+package explorer;
+
+import java.util.Arrays;
+
+/**
+ * An agent's beliefs about where it is: a probability for every cell of the map.
+ *
+ * Stored as one flat array with cells laid out x*h + y, the same as the world's successor table. That keeps
+ * the whole grid contiguous, so the update loops are simple runs over a double[] and can be done in place
+ * rather than allocating a new 2D array every time.
+ *
+ * Once an agent has some idea where it is most of the cells are 0, so the grid also keeps track of which cells
+ * might not be (the support), as a list of indices plus a bit per cell to say what's in the list. While the
+ * support is small the updates only visit those cells. When it gets too big to be worth it the grid stops
+ * tracking and just goes over everything (dense), until a correction makes it small again.
+ *
+ * Optionally the grid can work in the log domain instead, for long runs: the real beliefs are then kept as logs
+ * (which can't underflow), and the plain probabilities everybody else reads are worked out from them after each
+ * update with log-sum-exp. Log grids are always dense and ignore the world's beliefCutoff.
+ * @author mathewpaul1
+ *
+ */
+public class BeliefGrid implements Beliefs {
+
+	/** the dense loops, vectorised if we can */
+	private static final BeliefKernels kernels = BeliefKernels.get();
+
+	/** the support is tracked while it is at most 1/SPARSE_FRACTION of the cells */
+	private static final int SPARSE_FRACTION = 4;
+
+	private final int width;
+	private final int height;
+	/** the actual beliefs, x*height + y */
+	private final double[] cells;
+	/** indices of the cells that might be nonzero, every other cell is exactly 0. Only meaningful when not dense */
+	private final int[] support;
+	private int supportSize;
+	/** one bit per cell, set if it is in the support list. Only kept up to date when not dense */
+	private final long[] inSupport;
+	/** if true we aren't tracking the support and any cell could be nonzero */
+	private boolean dense;
+	/** for getting a count back out of the kernels */
+	private final int[] counted = new int[1];
+
+	/** how many normalisations between shifting the logs back to sum to one (they drift by at most a few per update) */
+	private static final int RECENTRE_INTERVAL = 256;
+	/** log beliefs, or null if we aren't in the log domain. When we are, cells[i] = exp(logCells[i] - logNorm) */
+	private final double[] logCells;
+	private double logNorm;
+	/** normalisations since the logs were last recentred */
+	private int sinceRecentre;
+
+	/** Makes a grid of the given size with no belief anywhere */
+	public BeliefGrid(int width, int height) {
+		this(width, height, false);
+	}
+
+	/** As above, in the log domain if logDomain is true */
+	public BeliefGrid(int width, int height, boolean logDomain) {
+		this.width = width;
+		this.height = height;
+		cells = new double[width*height];
+		if (logDomain) {
+			support = new int[0];
+			inSupport = new long[0];
+			logCells = new double[cells.length];
+			Arrays.fill(logCells, Double.NEGATIVE_INFINITY);
+			dense = true;
+		} else {
+			support = new int[cells.length/SPARSE_FRACTION];
+			inSupport = new long[(cells.length + 63) >>> 6];
+			logCells = null;
+		}
+	}
+
+	/** Makes a grid where every cell is equally likely -- i.e. we have no idea at all */
+	public static BeliefGrid uniform(int width, int height) {
+		return uniform(width, height, false);
+	}
+
+	/** As above, in the log domain if logDomain is true */
+	public static BeliefGrid uniform(int width, int height, boolean logDomain) {
+		BeliefGrid grid = new BeliefGrid(width, height, logDomain);
+		grid.fill(1.0/(width*height));
+		return grid;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	/** number of cells */
+	public int size() {
+		return cells.length;
+	}
+
+	@Override
+	public double get(int x, int y) {
+		return cells[x*height + y];
+	}
+
+	/** get by flat index */
+	@Override
+	public double get(int i) {
+		return cells[i];
+	}
+
+	@Override
+	public void set(int x, int y, double belief) {
+		int i = x*height + y;
+		cells[i] = belief;
+		if (logCells != null)
+			logCells[i] = Math.log(belief) + logNorm;
+		else if (belief != 0)
+			include(i);
+	}
+
+	/** The raw storage, for the kernels that need to run over it. */
+	double[] cells() {
+		return cells;
+	}
+
+	/**
+	 * How many cells might have some belief in them. Loop k from 0 to this and look at supportCell(k) to visit
+	 * everything that matters -- when the grid is dense that's just every cell.
+	 */
+	@Override
+	public int supportSize() {
+		return dense? cells.length : supportSize;
+	}
+
+	/** The flat index of the k'th cell in the support */
+	@Override
+	public int supportCell(int k) {
+		return dense? k : support[k];
+	}
+
+	@Override
+	public double supportWeight(int k) {
+		return cells[dense? k : support[k]];
+	}
+
+	/** true if the grid has stopped keeping track of its support */
+	@Override
+	public boolean isDense() {
+		return dense;
+	}
+
+	/** log grids go back to uniform if everything goes to 0, plain ones don't */
+	@Override
+	public boolean resetsWhenEmpty() {
+		return logCells != null;
+	}
+
+	/** true if the beliefs are kept as logs */
+	public boolean isLogDomain() {
+		return logCells != null;
+	}
+
+	/** adds cell i to the support, going dense if there isn't room */
+	private void include(int i) {
+		if (dense)
+			return;
+		long bit = 1L << i;
+		if ((inSupport[i >>> 6] & bit) == 0) {
+			if (supportSize == support.length) {
+				dense = true;
+				return;
+			}
+			inSupport[i >>> 6] |= bit;
+			support[supportSize++] = i;
+		}
+	}
+
+	/** Zeroes the grid, leaving it sparse with nothing in the support. Only touches the support if there is one */
+	private void clear() {
+		if (dense) {
+			Arrays.fill(cells, 0);
+			Arrays.fill(inSupport, 0);
+			dense = false;
+		} else {
+			for (int k = 0; k < supportSize; k++) {
+				int i = support[k];
+				cells[i] = 0;
+				inSupport[i >>> 6] = 0; // everything in the support is getting cleared, so whole words can go
+			}
+		}
+		supportSize = 0;
+	}
+
+	/** Sets the support to the first n entries of the support list, which have been filled in directly */
+	private void resetSupport(int n) {
+		Arrays.fill(inSupport, 0);
+		for (int k = 0; k < n; k++)
+			inSupport[support[k] >>> 6] |= 1L << support[k];
+		supportSize = n;
+		dense = false;
+	}
+
+	/** sets every cell to the same value */
+	public void fill(double belief) {
+		if (logCells != null) {
+			Arrays.fill(cells, belief);
+			Arrays.fill(logCells, Math.log(belief));
+			logNorm = 0;
+		} else if (belief == 0) {
+			clear();
+		} else {
+			Arrays.fill(cells, belief);
+			dense = true;
+		}
+	}
+
+	/** Overwrites this grid with another of the same size (and domain) */
+	public void copyFrom(BeliefGrid other) {
+		if (logCells != null) {
+			System.arraycopy(other.cells, 0, cells, 0, cells.length);
+			System.arraycopy(other.logCells, 0, logCells, 0, cells.length);
+			logNorm = other.logNorm;
+			sinceRecentre = other.sinceRecentre;
+		} else if (other.dense) {
+			System.arraycopy(other.cells, 0, cells, 0, cells.length);
+			dense = true;
+		} else {
+			clear();
+			for (int k = 0; k < other.supportSize; k++) {
+				int i = other.support[k];
+				cells[i] = other.cells[i];
+				support[k] = i;
+			}
+			resetSupport(other.supportSize);
+		}
+	}
+
+	/** Returns a new grid with the same beliefs */
+	public BeliefGrid copy() {
+		BeliefGrid grid = new BeliefGrid(width, height, logCells != null);
+		grid.copyFrom(this);
+		return grid;
+	}
+
+	/**
+	 * The prediction step. Pushes these beliefs through the transition model for action b and puts the result in out.
+	 * Each cell only has one successor so this is a single pass. out must be a different grid to this one, as
+	 * several cells can share a successor (at the edges). The support can only shrink, so a sparse grid stays sparse.
+	 * @param world - the world, for its successor table
+	 * @param b - the action taken
+	 * @param into - where the predicted beliefs go (another BeliefGrid)
+	 */
+	@Override
+	public void predict(ExplorerWorld world, int b, Beliefs into) {
+		BeliefGrid out = (BeliefGrid) into;
+		int[] succ = world.getSuccessors(b);
+		double[] next = out.cells;
+		if (logCells != null) {
+			predictLog(succ, out);
+			return;
+		}
+		out.clear();
+		if (dense) {
+			for (int i = 0; i < cells.length; i++)
+				next[succ[i]] += cells[i];
+			out.dense = true;
+		} else {
+			for (int k = 0; k < supportSize; k++) {
+				int i = support[k];
+				double belief = cells[i];
+				if (belief != 0) {
+					next[succ[i]] += belief;
+					out.include(succ[i]);
+				}
+			}
+		}
+	}
+
+	/** predict for log grids. The logs get added up with log-sum-exp where cells share a successor */
+	private void predictLog(int[] succ, BeliefGrid out) {
+		double[] next = out.cells, logNext = out.logCells;
+		Arrays.fill(next, 0);
+		Arrays.fill(logNext, Double.NEGATIVE_INFINITY);
+		for (int i = 0; i < cells.length; i++) {
+			int j = succ[i];
+			next[j] += cells[i];
+			logNext[j] = logAdd(logNext[j], logCells[i]);
+		}
+		out.logNorm = logNorm;
+		out.sinceRecentre = sinceRecentre;
+	}
+
+	/** ln(e^x + e^y), without leaving the log domain */
+	private static double logAdd(double x, double y) {
+		double max = Math.max(x, y), min = Math.min(x, y);
+		if (min == Double.NEGATIVE_INFINITY)
+			return max;
+		return max + Math.log1p(Math.exp(min - max));
+	}
+
+	/**
+	 * The correction step: multiplies each cell by the probability of seeing obs from there after looking in direction a,
+	 * and puts the result in out (which can be this grid, to do it in place). Anything that comes out smaller than the
+	 * world's beliefCutoff is set to 0, and the cells left over become out's support.
+	 * Does not normalise, so that the caller can see if everything went to 0.
+	 * @return the sum of the unnormalised beliefs (ie. the probability of the observation)
+	 */
+	@Override
+	public double correct(ExplorerWorld world, int a, int obs, Beliefs into) {
+		BeliefGrid out = (BeliefGrid) into;
+		if (logCells != null)
+			return correctLog(world, a, obs, out);
+		double[] likelihood = world.getLikelihoods(a, obs);
+		double cutoff = world.beliefCutoff;
+		double[] result = out.cells;
+		int[] outSupport = out.support;
+		double sum = 0;
+		if (dense) {
+			// count the nonzero cells as we go, in case there are few enough to go sparse again
+			int nonzero = 0;
+			if (cutoff > 0) {
+				for (int i = 0; i < cells.length; i++) {
+					double r = cells[i] * likelihood[i];
+					if (Math.abs(r) < cutoff)
+						r = 0;
+					result[i] = r;
+					sum += r;
+					if (r != 0)
+						nonzero++;
+				}
+			} else { // the usual case
+				sum = kernels.multiply(cells, likelihood, result, counted);
+				nonzero = counted[0];
+			}
+			if (nonzero <= outSupport.length) {
+				int n = 0;
+				for (int i = 0; n < nonzero; i++)
+					if (result[i] != 0)
+						outSupport[n++] = i;
+				out.resetSupport(n);
+			} else {
+				out.dense = true;
+			}
+		} else if (out == this) {
+			// in place, so cells outside the support are already 0. Cells that drop out get taken out of the list
+			int n = 0;
+			for (int k = 0; k < supportSize; k++) {
+				int i = support[k];
+				double r = cells[i] * likelihood[i];
+				if (Math.abs(r) < cutoff)
+					r = 0;
+				cells[i] = r;
+				sum += r;
+				if (r != 0)
+					support[n++] = i;
+				else
+					inSupport[i >>> 6] &= ~(1L << i);
+			}
+			supportSize = n;
+		} else {
+			out.clear();
+			for (int k = 0; k < supportSize; k++) {
+				int i = support[k];
+				double r = cells[i] * likelihood[i];
+				if (Math.abs(r) < cutoff)
+					r = 0;
+				if (r != 0) {
+					result[i] = r;
+					sum += r;
+					out.include(i);
+				}
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * correct for log grids: adds the log likelihood, then redoes the probabilities relative to the biggest log so
+	 * that they can't all underflow. The likelihood only takes two values so the logs come straight from what the
+	 * sensor would see, no table needed. out can be this grid.
+	 */
+	private double correctLog(ExplorerWorld world, int a, int obs, BeliefGrid out) {
+		double priorLogNorm = logNorm; // before out (which might be us) gets its new one
+		byte[] sensed = world.getSensed(a);
+		double p = world.observationProbability;
+		double logHit = Math.log(p), logMiss = Math.log((1-p)/2.0);
+		double[] result = out.logCells;
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < cells.length; i++) {
+			result[i] = logCells[i] + ((sensed[i] == obs)? logHit : logMiss);
+			max = Math.max(max, result[i]);
+		}
+		out.sinceRecentre = sinceRecentre;
+		if (max == Double.NEGATIVE_INFINITY) { // couldn't have seen obs from anywhere
+			out.logNorm = max;
+			Arrays.fill(out.cells, 0);
+			return 0;
+		}
+		double sum = 0;
+		for (int i = 0; i < cells.length; i++) {
+			out.cells[i] = Math.exp(result[i] - max);
+			sum += out.cells[i];
+		}
+		out.logNorm = max;
+		// the prior's cells sum to one with logs relative to its logNorm, so this is the probability of the observation
+		return Math.exp(max - priorLogNorm) * sum;
+	}
+
+	/** The probability of seeing obs after looking in direction a, according to these beliefs: sum of belief times likelihood */
+	@Override
+	public double observationProbability(ExplorerWorld world, int a, int obs) {
+		double[] likelihood = world.getLikelihoods(a, obs);
+		double sum = 0;
+		if (dense) {
+			sum = kernels.dot(cells, likelihood);
+		} else {
+			for (int k = 0; k < supportSize; k++)
+				sum += cells[support[k]] * likelihood[support[k]];
+		}
+		return sum;
+	}
+
+	/** sum of all the beliefs */
+	@Override
+	public double sum() {
+		double sum = 0;
+		if (dense) {
+			sum = kernels.sum(cells);
+		} else {
+			for (int k = 0; k < supportSize; k++)
+				sum += cells[support[k]];
+		}
+		return sum;
+	}
+
+	/**
+	 * Divides everything by sum, in place. Log grids work out their own sum (the one passed in could have
+	 * underflowed), and if everything has gone to 0 they go back to uniform rather than dividing by it.
+	 */
+	@Override
+	public void normalise(double sum) {
+		if (logCells != null) {
+			normaliseLog();
+		} else if (dense) {
+			kernels.divide(cells, sum);
+		} else {
+			for (int k = 0; k < supportSize; k++)
+				cells[support[k]] /= sum;
+		}
+	}
+
+	/** Makes the beliefs sum to one, in place */
+	@Override
+	public void normalise() {
+		normalise(sum());
+	}
+
+	/** normalise for log grids. Only the probabilities get scaled, the logs just get shifted now and again */
+	private void normaliseLog() {
+		double sum = 0;
+		for (int i = 0; i < cells.length; i++)
+			sum += cells[i];
+		if (sum == 0 || logNorm == Double.NEGATIVE_INFINITY) { // nothing left to go on
+			fill(1.0/cells.length);
+			return;
+		}
+		for (int i = 0; i < cells.length; i++)
+			cells[i] /= sum;
+		logNorm += Math.log(sum);
+		if (++sinceRecentre >= RECENTRE_INTERVAL) {
+			for (int i = 0; i < cells.length; i++)
+				logCells[i] -= logNorm;
+			logNorm = 0;
+			sinceRecentre = 0;
+		}
+	}
+
+	/** A copy of the beliefs as a plain [x][y] array, for anything that still wants it that way */
+	public double[][] toArray() {
+		double[][] array = new double[width][height];
+		for (int x = 0; x < width; x++)
+			System.arraycopy(cells, x*height, array[x], 0, height);
+		return array;
+	}
+}
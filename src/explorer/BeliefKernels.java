@@ -0,0 +1,103 @@
+package explorer;
+
+/**
+ * The element-wise loops the belief updates spend their time in, over flat arrays of the same length.
+ *
+ * This is the plain scalar version. If the vector version (src-vector/explorer/VectorBeliefKernels.java, built
+ * against the jdk.incubator.vector module) is on the classpath and the jvm was started with
+ * --add-modules jdk.incubator.vector, get() hands that out instead. Setting -Dexplorer.kernels=scalar forces the
+ * scalar one, for comparing. The vector version adds things up in a different order, so results can differ in
+ * the last few bits.
+ * @author mathewpaul1
+ *
+ */
+public class BeliefKernels {
+
+	private static final BeliefKernels INSTANCE = load();
+
+	/** The best kernels we can have on this jvm. Worked out once, at startup */
+	public static BeliefKernels get() {
+		return INSTANCE;
+	}
+
+	private static BeliefKernels load() {
+		if (!"scalar".equals(System.getProperty("explorer.kernels"))) {
+			try {
+				return (BeliefKernels) Class.forName("explorer.VectorBeliefKernels").getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				// not built, or the module isn't there. Either way the scalar ones will do
+			}
+		}
+		return new BeliefKernels();
+	}
+
+	/** What these are, for printing */
+	public String getName() {
+		return "scalar";
+	}
+
+	/**
+	 * out[i] = a[i]*b[i], returning the sum of out. out can be a.
+	 * @param nonzero - nonzero[0] gets how many elements of out aren't 0
+	 */
+	public double multiply(double[] a, double[] b, double[] out, int[] nonzero) {
+		double sum = 0;
+		int n = 0;
+		for (int i = 0; i < a.length; i++) {
+			double r = a[i] * b[i];
+			out[i] = r;
+			sum += r;
+			if (r != 0)
+				n++;
+		}
+		nonzero[0] = n;
+		return sum;
+	}
+
+	/** sum of a[i]*b[i] */
+	public double dot(double[] a, double[] b) {
+		double sum = 0;
+		for (int i = 0; i < a.length; i++)
+			sum += a[i] * b[i];
+		return sum;
+	}
+
+	/** out[k] = a dotted with fields[k], for four fields at once (so a only gets read the once) */
+	public void dot4(double[] a, double[][] fields, double[] out) {
+		double[] f0 = fields[0], f1 = fields[1], f2 = fields[2], f3 = fields[3];
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		for (int i = 0; i < a.length; i++) {
+			double x = a[i];
+			s0 += x * f0[i];
+			s1 += x * f1[i];
+			s2 += x * f2[i];
+			s3 += x * f3[i];
+		}
+		out[0] = s0;
+		out[1] = s1;
+		out[2] = s2;
+		out[3] = s3;
+	}
+
+	public double sum(double[] a) {
+		double sum = 0;
+		for (int i = 0; i < a.length; i++)
+			sum += a[i];
+		return sum;
+	}
+
+	/** a[i] /= d, in place */
+	public void divide(double[] a, double d) {
+		for (int i = 0; i < a.length; i++)
+			a[i] /= d;
+	}
+
+	/** sum of a[i]*ln(a[i]) over the positive elements (the rest count as 0) */
+	public double xlogx(double[] a) {
+		double sum = 0;
+		for (int i = 0; i < a.length; i++)
+			if (a[i] > 0)
+				sum += a[i] * Math.log(a[i]);
+		return sum;
+	}
+}
@@ -0,0 +1,70 @@
+package explorer;
+
+/**
+ * What an explorer's beliefs about its position have to be able to do, whatever they are stored as: an exact grid
+ * (BeliefGrid) or a set of weighted samples (ParticleBeliefs). Cells are flattened as x*h + y, like everywhere else.
+ *
+ * Anything that needs to add up over the beliefs should go over the support rather than every cell:
+ *     for (int k = 0; k < beliefs.supportSize(); k++)
+ *         ... beliefs.supportCell(k) ... beliefs.supportWeight(k) ...
+ * Each cell comes up at most once, and every cell that doesn't come up has no belief in it.
+ *
+ * The updates write into another set of beliefs of the same kind (made by the same world), so the explorers can
+ * keep a spare one around and swap.
+ * @author mathewpaul1
+ *
+ */
+public interface Beliefs {
+
+	public int getWidth();
+
+	public int getHeight();
+
+	/** the belief in cell (x,y) */
+	public double get(int x, int y);
+
+	/** the belief in a cell, by flat index */
+	public double get(int i);
+
+	public void set(int x, int y, double belief);
+
+	/** how many cells might have some belief in them */
+	public int supportSize();
+
+	/** the flat index of the k'th cell in the support */
+	public int supportCell(int k);
+
+	/** the belief in the k'th cell of the support */
+	public double supportWeight(int k);
+
+	/** true if the support is just every cell in order (so supportCell(k) == k) */
+	public boolean isDense();
+
+	/** The prediction step: pushes these beliefs through the transition model for action b, into out (not this). */
+	public void predict(ExplorerWorld world, int b, Beliefs out);
+
+	/**
+	 * The correction step: weights the beliefs by the probability of seeing obs after looking in direction a, into out
+	 * (which can be this). Doesn't normalise.
+	 * @return the sum of the unnormalised beliefs (ie. the probability of the observation)
+	 */
+	public double correct(ExplorerWorld world, int a, int obs, Beliefs out);
+
+	/** The probability of seeing obs after looking in direction a, according to these beliefs */
+	public double observationProbability(ExplorerWorld world, int a, int obs);
+
+	/** sum of all the beliefs */
+	public double sum();
+
+	/** divides everything by sum (as returned by correct or sum()) */
+	public void normalise(double sum);
+
+	/** makes the beliefs sum to one */
+	public void normalise();
+
+	/**
+	 * true if normalising beliefs that have all gone to 0 starts them again from uniform. If not the explorers mark
+	 * it themselves, by setting (0,0) to NEGATIVE_INFINITY.
+	 */
+	public boolean resetsWhenEmpty();
+}
@@ -0,0 +1,55 @@
+package explorer;
+
+import java.io.PrintStream;
+
+/** Prints events as they happen, the way the explorers used to print everything themselves. Fine for watching, slow for batches. */
+public class ConsoleTraceSink extends TraceSink {
+
+	private PrintStream out;
+
+	public ConsoleTraceSink(int level) {
+		this(level, System.out);
+	}
+
+	public ConsoleTraceSink(int level, PrintStream out) {
+		super(level);
+		this.out = out;
+	}
+
+	@Override
+	protected void record(int trial, int kind, Explorer source, int value, double score) {
+		String line = format(kind, String.valueOf(source), value, score);
+		out.println((trial < 0)? line : "[trial " + trial + "] " + line);
+	}
+
+	/** Turns an event into a line of text. source is whatever the explorer responsible should be called */
+	public static String format(int kind, String source, int value, double score) {
+		String who = "(" + source + ") ";
+		String extra = Double.isNaN(score)? "" : " (value: " + score + ")";
+		switch(kind) {
+		case SENSOR_ACTION:
+			return who + "Choosing sensor action: " + ExplorerWorld.actionToString(value) + extra;
+		case SENSOR_CANDIDATE:
+			return who + "   " + ExplorerWorld.actionToString(value) + " : " + score;
+		case OBSERVATION:
+			return who + "Observing: " + value + extra;
+		case ACTION:
+			return who + "Choosing action: " + ExplorerWorld.actionToString(value) + extra;
+		case TARGET_REACHED:
+			return "Success for " + source + " in " + value + " steps.";
+		case PHASE:
+			switch(value) {
+			case Simulation.SENSE:
+				return "~~~~~~~~~~~~~~~~\nGetting sensor actions";
+			case Simulation.OBSERVE:
+				return "~~~~~~~~~~~~~~~~\nObserving";
+			case Simulation.ACT:
+				return "~~~~~~~~~~~~~~~~\nGetting real actions & advancing";
+			default:
+				return "~~~~~~~~~~~~~~~~\nPhase " + value;
+			}
+		default:
+			return who + "event " + kind + ": " + value + extra;
+		}
+	}
+}
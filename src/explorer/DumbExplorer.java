@@ -10,23 +10,24 @@ import java.awt.Color;
 public class DumbExplorer implements Explorer {
 
 	private int lastAction = ExplorerWorld.NORTH;
-	private double[][] beliefs; // for explanation see the complicated one
+	private Beliefs beliefs; // for explanation see the complicated one
+	/** Preallocated grid that hypothetical and predicted beliefs get written into, then swapped with beliefs */
+	private Beliefs spare;
 
 	private ExplorerWorld world;
+	/** who we are as far as the world is concerned */
+	private int id;
 
 
 	private int[] actions = new int[]{ExplorerWorld.NORTH, ExplorerWorld.SOUTH, ExplorerWorld.WEST, ExplorerWorld.EAST};
+	/** scratch space for the expected reward of each action, indexed by action */
+	private double[] actionValues = new double[4];
 
 	public DumbExplorer(ExplorerWorld world) {
-		world.addExplorer(this);
+		id = world.addExplorer(this);
 		this.world = world;
-		beliefs = new double[world.getMap().length][world.getMap()[0].length];
-		double belief = 1.0/(world.getMap().length * world.getMap()[0].length);
-		for (int x = 0; x < beliefs.length; x++) {
-			for (int y = 0; y < beliefs[0].length; y++) {
-				beliefs[x][y] = belief;
-			}
-		}
+		beliefs = world.makeBeliefs(true, id, 0);
+		spare = world.makeBeliefs(false, id, 1);
 	}
 
 	@Override
@@ -36,34 +37,11 @@ public class DumbExplorer implements Explorer {
 
 	@Override
 	public int getAction() {
-		int bstar = -1;
-		double bstarval = Double.NEGATIVE_INFINITY;
-		for (int b : actions) {
-			// now we need to look at each possible state transition
-			double newStateSum = 0;
-			// which means for every possible next state
-			for (int newX = 0; newX < beliefs.length; newX++) {
-				for (int newY = 0; newY < beliefs[0].length; newY++) {
-					int[] newState = new int[]{newX,newY};
-					// we need to look at every possible previous state
-					double stateSum = 0;
-					for (int x = 0; x < beliefs.length; x++) {
-						for (int y = 0; y < beliefs[0].length; y++) {
-							stateSum += beliefs[x][y] * // belief in (x,y), times
-										world.transitionProbability(newX, newY, x, y, b) * // probability of getting into the new state
-										world.getReward(newState);
-						}
-					}
-					newStateSum += stateSum;
-				}
-			}
-			if (newStateSum > bstarval) {
-				bstar = b;
-				bstarval = newStateSum;
-			}
-		}
+		// expected reward of each action is a dot product of our beliefs with that action's reward field
+		int bstar = world.getActionValueEvaluator().bestAction(beliefs, actions, actionValues);
+		double bstarval = actionValues[bstar];
 
-		System.out.println("(DumbExplorer) Choosing action: " + world.actionToString(bstar) + " (value = " + bstarval + ")");
+		world.getTrace().event(TraceSink.ACTION, this, bstar, bstarval);
 		lastAction = bstar;
 		advanceBeliefs(bstar);
 		return bstar;
@@ -71,69 +49,50 @@ public class DumbExplorer implements Explorer {
 
 	@Override
 	public void observe(int y) {
-		System.out.println("(DumbExplorer) Observing: " + y);
-		beliefs = updateBeliefs(lastAction, y);
+		world.getTrace().event(TraceSink.OBSERVATION, this, y, Double.NaN);
+		Beliefs posterior = updateBeliefs(lastAction, y);
+		spare = beliefs; // swap rather than allocate
+		beliefs = posterior;
 	}
 
 	/** Returns the advanced beliefs given a sensor action and an observation. Does not overwrite existing beliefs
-	 * as we have to use this for figuring out the best options
+	 * as we have to use this for figuring out the best options. The result lives in the spare grid, so it is only
+	 * good until the next call (or until it gets swapped in).
 	 * @param a - the sensor action
 	 * @param obs - the observation
 	 * @return
 	 */
-	private double[][] updateBeliefs(int a, int obs) {
-		double[][] newBeliefs = new double[beliefs.length][beliefs[0].length];
-		double sum = 0; // for the normalisation
-		for (int x = 0; x < beliefs.length; x++) {
-			for (int y = 0; y < beliefs[0].length; y++) {
-				newBeliefs[x][y] = beliefs[x][y] * world.observationProbability(obs, a, x, y);
-				sum += newBeliefs[x][y];
-			}
-		}
-		if (sum == 0) { // this does happen a few times
-			newBeliefs[0][0] = Double.NEGATIVE_INFINITY;
+	Beliefs updateBeliefs(int a, int obs) { // package-private so the benchmarks can get at it
+		Beliefs newBeliefs = spare;
+		double sum = beliefs.correct(world, a, obs, newBeliefs); // for the normalisation
+		if (sum == 0 && !newBeliefs.resetsWhenEmpty()) { // this does happen a few times (some beliefs go back to uniform instead)
+			newBeliefs.set(0, 0, Double.NEGATIVE_INFINITY);
 			return newBeliefs;
 		}
-		// now normalise
-		for (int x = 0; x < beliefs.length; x++) {
-			for (int y = 0; y < beliefs[0].length; y++) {
-				newBeliefs[x][y] /= sum;
-			}
-		}
+		newBeliefs.normalise(sum);
 		return newBeliefs;
 	}
 
 	/** Advances beliefs according to the specified action (overwrites previous beliefs) */
-	private void advanceBeliefs(int b) {
-		double sum = 0;
-		double[][] newbel = new double[beliefs.length][beliefs[0].length];
-		for (int x  =0; x < beliefs.length; x++) {
-			for (int y = 0; y < beliefs[0].length; y++) {
-				double statesum = 0; // belief in each state is the sum of beliefs in possible previous state times the probability of the transition
-				for (int px = 0; px < beliefs.length; px++) {
-					for (int py = 0; py < beliefs[0].length; py++) {
-						statesum += beliefs[px][py] * world.transitionProbability(x, y, px, py, b);
-					}
-				}
-				newbel[x][y] = statesum;
-				sum += newbel[x][y];
-			}
-		}
-		// now normalise them
-		for (int x = 0; x < beliefs.length; x++) {
-			for (int y = 0; y < beliefs[0].length; y++) {
-				newbel[x][y] /= sum;
-			}
-		}
+	void advanceBeliefs(int b) { // package-private so the benchmarks can get at it
+		Beliefs newbel = spare;
+		beliefs.predict(world, b, newbel); // each state only has one successor, so this just shifts the mass along
+		newbel.normalise();
+		spare = beliefs;
 		beliefs = newbel;
 	}
 
+	@Override
+	public int getId() {
+		return id;
+	}
+
 	@Override
 	public int getLastSensorAction() {
 		return lastAction;
 	}
 
-	public double[][] getBeliefs() {
+	public Beliefs getBeliefs() {
 		return beliefs;
 	}
 
@@ -19,34 +19,40 @@ public class EntropicExplorer implements Explorer {
 
 	/** Entropy of the current set of beliefs */
 	private double currentEntropy;
-	private double beliefs[][];
+	private Beliefs beliefs;
+	/** Preallocated grid that hypothetical and predicted beliefs get written into, then swapped with beliefs */
+	private Beliefs spare;
 
 	private ExplorerWorld world;
+	/** who we are as far as the world is concerned */
+	private int id;
 
 	private int lastAction;
 	private int lastSensorAction;
 	private int[] actions = new int[]{ExplorerWorld.NORTH, ExplorerWorld.SOUTH, ExplorerWorld.WEST, ExplorerWorld.EAST};
+	/** scratch space for the expected reward of each action, indexed by action */
+	private double[] actionValues = new double[4];
 	private int[] sensorActions = actions;
 	private int[] observations = new int[]{ExplorerWorld.EMPTY, ExplorerWorld.FULL, ExplorerWorld.TARGET};
+	/** sums over our beliefs for scoring sensor actions */
+	private SensorStatistics stats = new SensorStatistics();
 
 	public EntropicExplorer(ExplorerWorld w) {
 		world = w;
-		world.addExplorer(this);
+		id = world.addExplorer(this);
 
 		// set up initial beliefs
-		beliefs = new double[world.getMap().length][world.getMap()[0].length];
-		double belief = 1.0/(world.getMap().length * world.getMap()[0].length);
-		for (int x = 0; x < beliefs.length; x++) {
-			for (int y = 0; y < beliefs[0].length; y++) {
-				beliefs[x][y] = belief;
-			}
-		}
+		beliefs = world.makeBeliefs(true, id, 0);
+		spare = world.makeBeliefs(false, id, 1);
 
 		currentEntropy = entropy(beliefs);
 	}
 
 	@Override
 	public int getSensorAction() {
+		// one pass over the beliefs tells us the probability and entropy of every possible posterior, so we never have to build them
+		stats.accumulate(world, beliefs);
+		double log2 = Math.log(2);
 		// we are going to have to find the argmin of the expected entropy across sensor actions
 		int astar = -1;
 		double astarval = Double.POSITIVE_INFINITY;
@@ -55,134 +61,86 @@ public class EntropicExplorer implements Explorer {
 			double ysum = 0;
 			for (int y : observations) {
 				// of the entropy
-				double newEntropy = entropy(updateBeliefs(a,y));
+				double newEntropy = stats.posteriorEntropy(a, y)/log2;
 				if (Double.isNaN(newEntropy))
 					newEntropy = currentEntropy;
 				//double entropyReduction = currentEntropy - newEntropy;
 				// weighted by the probability
 				// which is the sum across all possible states of our belief in that state times the probability of getting the observation in that state
-				double xsum = 0;
-				for (int ax = 0; ax < beliefs.length; ax++)
-					for (int ay = 0; ay < beliefs.length; ay++) {
-						xsum += beliefs[ax][ay] * world.observationProbability(y, a, ax, ay);
-					}
-				ysum += xsum * newEntropy;
+				ysum += stats.observationProbability(a, y) * newEntropy;
 			}
-			System.out.println("(EntropicExplorer)    " + world.actionToString(a) + " : " + ysum);
-			if (ysum < astarval) {
+			world.getTrace().event(TraceSink.SENSOR_CANDIDATE, this, a, ysum);
+			if (ActionValueEvaluator.beats(-ysum, -astarval)) { // lower is better, ties go to the first
 				astarval = ysum;
 				astar = a;
 			}
 		}
 		lastSensorAction = astar;
-		System.out.println("(EntropicExplorer) Choosing sensor action: " + world.actionToString(astar));
+		world.getTrace().event(TraceSink.SENSOR_ACTION, this, astar, astarval); // value is the expected entropy
 		return astar;
 	}
 
 	/** this is just the same as everybody else */
 	@Override
 	public int getAction() {
-		int bstar = -1;
-		double bstarval = Double.NEGATIVE_INFINITY;
-		for (int b : actions) {
-			// now we need to look at each possible state transition
-			double newStateSum = 0;
-			// which means for every possible next state
-			for (int newX = 0; newX < beliefs.length; newX++) {
-				for (int newY = 0; newY < beliefs[0].length; newY++) {
-					int[] newState = new int[]{newX,newY};
-					// we need to look at every possible previous state
-					double stateSum = 0;
-					for (int x = 0; x < beliefs.length; x++) {
-						for (int y = 0; y < beliefs[0].length; y++) {
-							stateSum += beliefs[x][y] * // belief in CURRENT state if we were to make the observation, times
-										world.transitionProbability(newX, newY, x, y, b) * // probability of getting into the new state
-										world.getReward(newState);
-						}
-					}
-					newStateSum += stateSum;
-				}
-			}
-			if (newStateSum > bstarval) {
-				bstar = b;
-				bstarval = newStateSum;
-			}
-		}
+		// expected reward of each action is a dot product of our beliefs with that action's reward field
+		int bstar = world.getActionValueEvaluator().bestAction(beliefs, actions, actionValues);
+		double bstarval = actionValues[bstar];
 
-		System.out.println("(EntropicExplorer) Choosing action: " + world.actionToString(bstar) + " (value = " + bstarval + ")");
+		world.getTrace().event(TraceSink.ACTION, this, bstar, bstarval);
 		lastAction = bstar;
 		advanceBeliefs(bstar);
 		return bstar;
 	}
 
 	/** Advances beliefs according to the specified action (overwrites previous beliefs) */
-	private void advanceBeliefs(int b) {
-		double sum = 0;
-		double[][] newbel = new double[beliefs.length][beliefs[0].length];
-		for (int x  =0; x < beliefs.length; x++) {
-			for (int y = 0; y < beliefs[0].length; y++) {
-				double statesum = 0; // belief in each state is the sum of beliefs in possible previous state times the probability of the transition
-				for (int px = 0; px < beliefs.length; px++) {
-					for (int py = 0; py < beliefs[0].length; py++) {
-						statesum += beliefs[px][py] * world.transitionProbability(x, y, px, py, b);
-					}
-				}
-				newbel[x][y] = statesum;
-				sum += newbel[x][y];
-			}
-		}
-		// now normalise them
-		for (int x = 0; x < beliefs.length; x++) {
-			for (int y = 0; y < beliefs[0].length; y++) {
-				newbel[x][y] /= sum;
-			}
-		}
+	void advanceBeliefs(int b) { // package-private so the benchmarks can get at it
+		Beliefs newbel = spare;
+		beliefs.predict(world, b, newbel); // each state only has one successor, so this just shifts the mass along
+		newbel.normalise();
+		spare = beliefs;
 		beliefs = newbel;
 	}
 
 	@Override
 	public void observe(int y) {
-		System.out.print("(EntropicExplorer) Observing: " + y);
-		beliefs = updateBeliefs(lastSensorAction, y);
+		Beliefs posterior = updateBeliefs(lastSensorAction, y);
+		spare = beliefs; // swap rather than allocate
+		beliefs = posterior;
 		currentEntropy = entropy(beliefs);
-		System.out.println(" (entropy now " + currentEntropy + ")");
+		world.getTrace().event(TraceSink.OBSERVATION, this, y, currentEntropy); // value is the entropy now
 	}
 
 	/** Returns the advanced beliefs given a sensor action and an observation. Does not overwrite existing beliefs
-	 * as we have to use this for figuring out the best options
+	 * as we have to use this for figuring out the best options. The result lives in the spare grid, so it is only
+	 * good until the next call (or until it gets swapped in).
 	 * @param a - the sensor action
 	 * @param obs - the observation
 	 * @return
 	 */
-	private double[][] updateBeliefs(int a, int obs) {
-		double[][] newBeliefs = new double[beliefs.length][beliefs[0].length];
-		double sum = 0; // for the normalisation
-		for (int x = 0; x < beliefs.length; x++) {
-			for (int y = 0; y < beliefs[0].length; y++) {
-				newBeliefs[x][y] = beliefs[x][y] * world.observationProbability(obs, a, x, y);
-				sum += newBeliefs[x][y];
-			}
-		}
-		if (sum == 0) { // this does happen a few times
-			newBeliefs[0][0] = Double.NEGATIVE_INFINITY;
+	Beliefs updateBeliefs(int a, int obs) { // package-private so the benchmarks can get at it
+		Beliefs newBeliefs = spare;
+		double sum = beliefs.correct(world, a, obs, newBeliefs); // for the normalisation
+		if (sum == 0 && !newBeliefs.resetsWhenEmpty()) { // this does happen a few times (some beliefs go back to uniform instead)
+			newBeliefs.set(0, 0, Double.NEGATIVE_INFINITY);
 			return newBeliefs;
 		}
-		// now normalise
-		for (int x = 0; x < beliefs.length; x++) {
-			for (int y = 0; y < beliefs[0].length; y++) {
-				newBeliefs[x][y] /= sum;
-			}
-		}
+		newBeliefs.normalise(sum);
 		return newBeliefs;
 	}
 
+	@Override
+	public int getId() {
+		return id;
+	}
+
 	@Override
 	public int getLastSensorAction() {
 		return lastSensorAction;
 	}
 
 	@Override
-	public double[][] getBeliefs() {
+	public Beliefs getBeliefs() {
 		return beliefs;
 	}
 
@@ -192,14 +150,16 @@ public class EntropicExplorer implements Explorer {
 	}
 
 	/** takes a set of beliefs and returns the shannon entropy (log base 2) */
-	private double entropy(double[][] beliefs) {
+	private double entropy(Beliefs beliefs) {
 		double sum = 0;
 		double log2 = Math.log(2);
-		for (int x = 0; x < beliefs.length; x++) {
-			for (int y = 0; y < beliefs[0].length; y++) {
-				if (beliefs[x][y] > 0) // because we can't take log of 0 (but we can skit around it because we would be multiplying it by 0 anyway so even if it existed it wouldn't contribute to the sum)
-					sum += beliefs[x][y] * (Math.log(beliefs[x][y])/log2); // because logb(n) = log(n)/log(b)
-			}
+		if (beliefs instanceof BeliefGrid && beliefs.isDense()) // the whole grid in one go, vectorised if we can
+			return -BeliefKernels.get().xlogx(((BeliefGrid) beliefs).cells())/log2;
+		int support = beliefs.supportSize();
+		for (int k = 0; k < support; k++) {
+			double b = beliefs.supportWeight(k);
+			if (b > 0) // because we can't take log of 0 (but we can skit around it because we would be multiplying it by 0 anyway so even if it existed it wouldn't contribute to the sum)
+				sum += b * (Math.log(b)/log2); // because logb(n) = log(n)/log(b)
 		}
 
 		return -sum;
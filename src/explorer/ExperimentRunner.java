@@ -0,0 +1,536 @@
+package explorer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Runs batches of trials without any gui. Every trial gets its own world so they are completely independent,
+ * which means we can just throw them all at a fork-join pool. Each trial's world is seeded from the experiment
+ * seed, the map density and the trial number, so the results don't depend on how many threads there are or
+ * what order the trials finish in.
+ * @author mathewpaul1
+ *
+ */
+public class ExperimentRunner {
+
+	/** all the explorers we know how to make, and the default set for each trial */
+	public static final String[] EXPLORER_NAMES = {"DumbExplorer", "OptimalExplorer", "EntropicExplorer", "SurpriseExplorer", "RandomExplorer"};
+
+	/** how far ahead a LookaheadExplorer plans, and how many nodes it gets for each decision (a node budget rather
+	 *  than a time, so that results don't depend on the machine. This is enough to finish 3 cycles ahead on 7x7) */
+	public static final int LOOKAHEAD_DEPTH = 3;
+	public static final long LOOKAHEAD_BUDGET_NODES = 5000;
+
+	/** size of the worlds */
+	private int width, height;
+	/** all the trial seeds are derived from this */
+	private long seed;
+	/** how many steps (thirds of a cycle) before we give up on a trial */
+	private int maxSteps = 100;
+	/** the explorers each trial runs, in the order their results come back */
+	private String[] explorerNames = EXPLORER_NAMES;
+	/** where every trial's world sends its traces. Has to cope with several trials at once */
+	private TraceSink trace = TraceSink.NONE;
+	/** passed on to every world, see ExplorerWorld.observationProbability */
+	private double observationProbability = 0.9;
+	/** passed on to every world, see ExplorerWorld.beliefCutoff */
+	private double beliefCutoff = 0;
+	/** passed on to every world, see ExplorerWorld.logBeliefs */
+	private boolean logBeliefs = false;
+	/** passed on to every world, see ExplorerWorld.particles */
+	private int particles = 0;
+	/** how many of each explorer go in each world. More than one and the trial's phases get run on the pool too */
+	private int copies = 1;
+	/** makes each trial's map, unless they come from corpus */
+	private MapGenerator generator = new NoiseMapGenerator();
+	/** if not null, trial t's map is map t (wrapping round) of this, rather than a new one */
+	private MapCorpus corpus;
+	/** if not null every trial's path lengths get written here as they come in */
+	private TrialRecordWriter records;
+
+	private ForkJoinPool pool;
+
+	/** Uses every core */
+	public ExperimentRunner(int width, int height, long seed) {
+		this(width, height, seed, Runtime.getRuntime().availableProcessors());
+	}
+
+	public ExperimentRunner(int width, int height, long seed, int threads) {
+		this.width = width;
+		this.height = height;
+		this.seed = seed;
+		pool = new ForkJoinPool(threads);
+	}
+
+	/** Makes one of each kind of explorer in the given world, in the same order as EXPLORER_NAMES */
+	public static List<Explorer> makeExplorers(ExplorerWorld world) {
+		return makeExplorers(world, EXPLORER_NAMES);
+	}
+
+	/** Makes the named explorers in the given world, in order */
+	public static List<Explorer> makeExplorers(ExplorerWorld world, String[] names) {
+		List<Explorer> explorers = new ArrayList<>();
+		for (String name : names)
+			explorers.add(makeExplorer(world, name));
+		return explorers;
+	}
+
+	/** Makes an explorer from its name, with or without the "Explorer" on the end */
+	public static Explorer makeExplorer(ExplorerWorld world, String name) {
+		switch(name.endsWith("Explorer")? name : name + "Explorer") {
+		case "DumbExplorer":
+			return new DumbExplorer(world);
+		case "OptimalExplorer":
+			return new OptimalExplorer(world);
+		case "LookaheadExplorer": // OptimalExplorer looking a few cycles ahead
+			LookaheadPlanner planner = new LookaheadPlanner(world, LOOKAHEAD_DEPTH, 0);
+			planner.setNodeBudget(LOOKAHEAD_BUDGET_NODES);
+			return new OptimalExplorer(world, planner);
+		case "EntropicExplorer":
+			return new EntropicExplorer(world);
+		case "SurpriseExplorer":
+			return new SurpriseExplorer(world);
+		case "RandomExplorer":
+			return new RandomExplorer(world);
+		default:
+			throw new IllegalArgumentException("unknown explorer: " + name);
+		}
+	}
+
+	/**
+	 * Runs a batch of trials in parallel and puts the results together. Each trial is written to the records (if
+	 * there are any) as soon as it and all the ones before it are done.
+	 * @param trials - how many
+	 * @param mapProb - the probability of a square being full
+	 * @return one Result per explorer, in the same order as the explorer set
+	 */
+	public List<Result> run(int trials, double mapProb) throws IOException {
+		List<Result> results = new ArrayList<>();
+		for (String name : explorerNames)
+			results.add(new Result(name));
+		boolean[] all = new boolean[explorerNames.length];
+		Arrays.fill(all, true);
+		runBatch(mapProb, 0, trials, all, results);
+		return results;
+	}
+
+	/**
+	 * Runs trials at one density until we're confident enough of every explorer's average path length: until the
+	 * 95% confidence interval is within halfWidth either side, or we hit maxTrials. After the first minTrials, each
+	 * batch is as many more as the explorer that's furthest off looks like it needs (from its variance so far), and
+	 * explorers that are already there stop being run. So the trials go to where the path lengths are all over the
+	 * place, and easy densities get done with quickly.
+	 *
+	 * Trial numbers carry on from batch to batch, so it is as reproducible as run. Explorers that have dropped out
+	 * come out in the records as -2 (not run).
+	 * @return one Result per explorer, in the same order as the explorer set
+	 */
+	public List<Result> runAdaptive(double mapProb, double halfWidth, int minTrials, int maxTrials) throws IOException {
+		List<Result> results = new ArrayList<>();
+		for (String name : explorerNames)
+			results.add(new Result(name));
+		boolean[] active = new boolean[explorerNames.length];
+		Arrays.fill(active, true);
+		int done = 0;
+		int batch = Math.min(minTrials, maxTrials);
+		while (batch > 0) {
+			runBatch(mapProb, done, batch, active, results);
+			done += batch;
+			int more = 0;
+			for (int e = 0; e < active.length; e++) {
+				if (!active[e])
+					continue;
+				Result r = results.get(e);
+				int needed = trialsNeeded(r, halfWidth);
+				if (needed <= r.numTrials)
+					active[e] = false;
+				else
+					more = Math.max(more, needed - r.numTrials);
+			}
+			// no point in a batch smaller than the pool can do at once
+			batch = (more == 0)? 0 : Math.min(Math.max(more, pool.getParallelism()), maxTrials - done);
+		}
+		return results;
+	}
+
+	/** roughly how many successful trials r needs for its 95% confidence interval to be within halfWidth either side */
+	private static int trialsNeeded(Result r, double halfWidth) {
+		if (r.numTrials < 2)
+			return Integer.MAX_VALUE;
+		double n = Math.ceil(Math.pow(1.96 * r.getStandardDeviation() / halfWidth, 2));
+		return (int) Math.min(n, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Runs trials first to first+count-1 of the explorers that are active, in parallel, adding their path lengths to
+	 * results. Each trial is written to the records (if there are any) as soon as it and all the ones before it are
+	 * done.
+	 */
+	private void runBatch(double mapProb, int first, int count, boolean[] active, List<Result> results) throws IOException {
+		List<String> names = new ArrayList<>();
+		List<Integer> which = new ArrayList<>(); // where each of names is in the full set
+		for (int e = 0; e < explorerNames.length; e++) {
+			if (active[e]) {
+				names.add(explorerNames[e]);
+				which.add(e);
+			}
+		}
+		final String[] running = names.toArray(new String[names.size()]);
+
+		List<ForkJoinTask<int[]>> tasks = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			final int trial = first + i;
+			tasks.add(pool.submit(() -> runTrial(mapProb, trial, running)));
+		}
+
+		// merge in trial order, so we get the same thing no matter how the trials were scheduled
+		for (int i = 0; i < count; i++) {
+			int trial = first + i;
+			int[] lengths = tasks.get(i).join();
+			int[] all = new int[explorerNames.length * copies];
+			Arrays.fill(all, -2);
+			for (int k = 0; k < lengths.length; k++) {
+				int e = which.get(k % running.length); // copies all count towards the same result
+				all[(k / running.length) * explorerNames.length + e] = lengths[k];
+				Result r = results.get(e);
+				if (lengths[k] == -1)
+					r.addFailure();
+				else
+					r.add(lengths[k]);
+			}
+			if (records != null)
+				records.write(width, height, observationProbability, mapProb, trial, trialSeed(mapProb, trial), all);
+		}
+	}
+
+	/** Runs one trial, returning the path length of each explorer (-1 if it didn't make it), a whole set for each copy in turn */
+	public int[] runTrial(double mapProb, int trial) {
+		return runTrial(mapProb, trial, explorerNames);
+	}
+
+	/** As above, with just the named explorers */
+	private int[] runTrial(double mapProb, int trial, String[] names) {
+		ExplorerWorld world;
+		if (corpus != null) {
+			try {
+				world = new ExplorerWorld(corpus.get(trial % corpus.size()), trialSeed(mapProb, trial));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		} else {
+			world = new ExplorerWorld(width, height, mapProb, trialSeed(mapProb, trial), generator);
+		}
+		world.setTrace(trace.forTrial(trial));
+		world.observationProbability = observationProbability;
+		world.beliefCutoff = beliefCutoff;
+		world.logBeliefs = logBeliefs;
+		world.particles = particles;
+		List<Explorer> explorers = new ArrayList<>();
+		for (int c = 0; c < copies; c++)
+			explorers.addAll(makeExplorers(world, names));
+		Simulation sim = new Simulation(world, explorers);
+		if (copies > 1) // worth splitting up a trial with that many agents, any spare threads can help
+			sim.setPool(pool);
+		sim.run(maxSteps);
+
+		int[] lengths = new int[explorers.size()];
+		for (int e = 0; e < lengths.length; e++)
+			lengths[e] = sim.getPathLength(explorers.get(e));
+		return lengths;
+	}
+
+	/** Mixes the experiment seed, map density and trial number into a seed for one trial's world */
+	public long trialSeed(double mapProb, int trial) {
+		return mix(mix(seed ^ Double.doubleToLongBits(mapProb)) + trial);
+	}
+
+	/** the splitmix64 finaliser, so that nearby inputs give unrelated seeds */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Runs a sweep over map densities, with this runner's size and explorers, writing one line per density to out:
+	 * the density followed by the average path length of each explorer. Sweep does more.
+	 */
+	public void sweep(int trials, double from, double to, double step, Writer out) throws IOException {
+		Sweep sweep = new Sweep(trials);
+		sweep.setSizes(Arrays.asList(new int[]{width, height}));
+		sweep.setObservationProbabilities(new double[]{observationProbability});
+		sweep.setExplorerSets(Arrays.asList(new String[][]{explorerNames}));
+		sweep.setDensities(from, to, step);
+		sweep.run(this, null, out);
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/** what makes the maps (noise by default) */
+	public void setMapGenerator(MapGenerator generator) {
+		this.generator = generator;
+	}
+
+	/**
+	 * Takes the maps from a corpus instead of making them: trial t gets map t, wrapping round if there aren't enough.
+	 * The size gets set to the corpus's, and the density is just a label as far as the maps are concerned (it still
+	 * goes into the seeds for everything else). null to go back to making them.
+	 */
+	public void setCorpus(MapCorpus corpus) {
+		this.corpus = corpus;
+		if (corpus != null)
+			setSize(corpus.getWidth(), corpus.getHeight());
+	}
+
+	/** where the maps come from, for labelling results: the generator's name, or "corpus" and the corpus's generator */
+	public String getMapSource() {
+		return (corpus == null)? generator.getName() : "corpus-" + corpus.getGenerator();
+	}
+
+	/**
+	 * Every setting that changes the results apart from the seed, size, observation probability and explorers, eg.
+	 * "maps noise steps 100 cutoff 0.0 beliefs grid copies 1". For telling whether two lots of results can be put
+	 * together. The kernels aren't in it: they only change the last few bits of the sums, which the explorers treat
+	 * as ties (see ActionValueEvaluator.beats), so a sweep can carry on on a machine with different ones.
+	 */
+	public String getSettings() {
+		String beliefs = (particles > 0)? "particles-" + particles : logBeliefs? "log" : "grid";
+		return "maps " + getMapSource() + " steps " + maxSteps + " cutoff " + beliefCutoff + " beliefs " + beliefs
+			 + " copies " + copies;
+	}
+
+	/** changes the size of the worlds from now on */
+	public void setSize(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	/** how likely the explorers' sensors are to be right (0.9 by default) */
+	public void setObservationProbability(double observationProbability) {
+		this.observationProbability = observationProbability;
+	}
+
+	public void setMaxSteps(int maxSteps) {
+		this.maxSteps = maxSteps;
+	}
+
+	/** sets the trace sink used by every trial (off by default) */
+	public void setTrace(TraceSink trace) {
+		this.trace = trace;
+	}
+
+	/** beliefs below this get dropped, which keeps them sparse (and quick) on big maps. 0 (the default) is exact */
+	public void setBeliefCutoff(double beliefCutoff) {
+		this.beliefCutoff = beliefCutoff;
+	}
+
+	/** keep beliefs in the log domain, for long runs where they might underflow */
+	public void setLogBeliefs(boolean logBeliefs) {
+		this.logBeliefs = logBeliefs;
+	}
+
+	/** use particle filters with this many particles instead of belief grids (0, the default, for grids) */
+	public void setParticles(int particles) {
+		this.particles = particles;
+	}
+
+	/** put this many of each explorer in every world (1 by default). Their results all go in together */
+	public void setCopies(int copies) {
+		this.copies = copies;
+	}
+
+	/** write every trial's results to records as they come in (null, the default, to not bother) */
+	public void setRecords(TrialRecordWriter records) {
+		this.records = records;
+	}
+
+	public TrialRecordWriter getRecords() {
+		return records;
+	}
+
+	/** choose which explorers go in each trial */
+	public void setExplorers(String[] names) {
+		explorerNames = names.clone();
+	}
+
+	/**
+	 * Headless entry point, for running sweeps on machines without a display. Never touches the gui.
+	 * With no arguments it does the usual sweep: 7x7 worlds, 500 trials at each density from 0.01 to 0.99, written to "results".
+	 * --size and --obsProb take comma separated lists and --explorers can be given more than once, to sweep over
+	 * those as well (see Sweep). With --checkpoint a killed sweep can be started again with the same arguments and
+	 * it carries on where it got to (with the seed from the checkpoint, if none is given).
+	 */
+	public static void main(String[] args) throws IOException {
+		int trials = 500, threads = Runtime.getRuntime().availableProcessors();
+		double from = 0.01, to = 1, step = 0.01;
+		Long seed = null;
+		String out = "results";
+		List<int[]> sizes = new ArrayList<>();
+		double[] observationProbabilities = {0.9};
+		List<String[]> explorerSets = new ArrayList<>();
+		String checkpoint = null;
+		double halfWidth = 0;
+		MapGenerator generator = new NoiseMapGenerator();
+		MapCorpus corpus = null;
+		int maxTrials = 10000, maxSteps = 100;
+		TraceSink trace = TraceSink.NONE;
+		RingBufferTraceSink ring = null;
+		double cutoff = 0;
+		boolean logBeliefs = false;
+		int particles = 0;
+		int copies = 1;
+		String records = null;
+
+		for (int i = 0; i < args.length; i++) {
+			switch(args[i]) {
+			case "--size":
+				for (String s : args[++i].split(",")) {
+					String[] size = s.split("x");
+					sizes.add(new int[]{Integer.parseInt(size[0]), Integer.parseInt(size[size.length-1])});
+				}
+				break;
+			case "--obsProb":
+				String[] probabilities = args[++i].split(",");
+				observationProbabilities = new double[probabilities.length];
+				for (int p = 0; p < probabilities.length; p++)
+					observationProbabilities[p] = Double.parseDouble(probabilities[p]);
+				break;
+			case "--trials":
+				trials = Integer.parseInt(args[++i]);
+				break;
+			case "--mapProb": // just the one density
+				from = Double.parseDouble(args[++i]);
+				to = Math.nextUp(from);
+				break;
+			case "--from":
+				from = Double.parseDouble(args[++i]);
+				break;
+			case "--to":
+				to = Double.parseDouble(args[++i]);
+				break;
+			case "--step":
+				step = Double.parseDouble(args[++i]);
+				break;
+			case "--seed":
+				seed = Long.parseLong(args[++i]);
+				break;
+			case "--threads":
+				threads = Integer.parseInt(args[++i]);
+				break;
+			case "--explorers":
+				explorerSets.add(args[++i].split(","));
+				break;
+			case "--ci": // keep going until the confidence intervals are this wide either side, --trials is then the least
+				halfWidth = Double.parseDouble(args[++i]);
+				break;
+			case "--max-trials":
+				maxTrials = Integer.parseInt(args[++i]);
+				break;
+			case "--max-steps":
+				maxSteps = Integer.parseInt(args[++i]);
+				break;
+			case "--map": // noise (the default), quartered, halved, maze, perlin, or a plugged in one
+				generator = MapGenerator.forName(args[++i]);
+				break;
+			case "--corpus": // use the maps in a file made by MapCorpus, rather than making new ones
+				corpus = new MapCorpus(new File(args[++i]));
+				break;
+			case "--checkpoint":
+				checkpoint = args[++i];
+				break;
+			case "--out":
+				out = args[++i];
+				break;
+			case "--cutoff":
+				cutoff = Double.parseDouble(args[++i]);
+				break;
+			case "--log-beliefs":
+				logBeliefs = true;
+				break;
+			case "--particles":
+				particles = Integer.parseInt(args[++i]);
+				break;
+			case "--records": // every trial, as it happens (appended, see TrialRecordWriter)
+				records = args[++i];
+				break;
+			case "--copies": // lots of agents in each world
+				copies = Integer.parseInt(args[++i]);
+				break;
+			case "--trace": // print everything as it happens
+				trace = new ConsoleTraceSink(args[++i].equals("debug")? TraceSink.DEBUG : TraceSink.INFO);
+				break;
+			case "--trace-ring": // keep the last n events and print them at the end
+				trace = ring = new RingBufferTraceSink(TraceSink.DEBUG, Integer.parseInt(args[++i]));
+				break;
+			default:
+				System.err.println("usage: ExperimentRunner [--size WxH,...] [--obsProb p,...] [--trials n] [--mapProb p | --from p --to p --step p]"
+								 + " [--seed s] [--threads n] [--explorers Dumb,Optimal,... ...] [--out file] [--checkpoint file] [--ci w [--max-trials n]] [--max-steps n] [--map name | --corpus file]"
+								 + " [--cutoff c] [--log-beliefs | --particles n] [--copies n] [--records file] [--trace info|debug | --trace-ring n]");
+				System.exit(1);
+			}
+		}
+		if (corpus != null) { // the corpus says what size and density
+			sizes.clear();
+			sizes.add(new int[]{corpus.getWidth(), corpus.getHeight()});
+			from = corpus.getDensity();
+			to = Math.nextUp(from);
+		}
+		if (sizes.isEmpty())
+			sizes.add(new int[]{7, 7});
+		if (explorerSets.isEmpty())
+			explorerSets.add(EXPLORER_NAMES);
+		if (records != null && explorerSets.size() > 1) {
+			System.err.println("(ExperimentRunner) can only keep records for one set of explorers at a time");
+			System.exit(1);
+		}
+		if (seed == null && checkpoint != null)
+			seed = Sweep.checkpointSeed(new File(checkpoint));
+		if (seed == null)
+			seed = System.nanoTime();
+
+		Sweep sweep = new Sweep(trials);
+		sweep.setSizes(sizes);
+		sweep.setObservationProbabilities(observationProbabilities);
+		sweep.setExplorerSets(explorerSets);
+		sweep.setDensities(from, to, step);
+		sweep.setConfidence(halfWidth, maxTrials);
+
+		System.err.println("(ExperimentRunner) " + sweep.getCellCount() + " cells, " + trials + " trials, seed " + seed
+						 + ", " + BeliefKernels.get().getName() + " kernels");
+		ExperimentRunner runner = new ExperimentRunner(sizes.get(0)[0], sizes.get(0)[1], seed, threads);
+		runner.setTrace(trace);
+		runner.setMaxSteps(maxSteps);
+		runner.setMapGenerator(generator);
+		runner.setCorpus(corpus);
+		runner.setBeliefCutoff(cutoff);
+		runner.setLogBeliefs(logBeliefs);
+		runner.setParticles(particles);
+		runner.setCopies(copies);
+		TrialRecordWriter recordWriter = (records == null)? null : new TrialRecordWriter(new File(records), explorerSets.get(0));
+		runner.setRecords(recordWriter);
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(out), "utf-8"));
+		try {
+			sweep.run(runner, (checkpoint == null)? null : new File(checkpoint), writer);
+		} finally {
+			writer.close();
+			if (recordWriter != null)
+				recordWriter.close();
+			if (corpus != null)
+				corpus.close();
+			if (ring != null)
+				ring.dump(System.err);
+		}
+	}
+}
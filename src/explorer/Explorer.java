@@ -11,11 +11,14 @@ public interface Explorer {
 	/** Receive an observation and do any necessary belief updates etc */
 	public void observe(int y);
 
+	/** the id the world gave us when we were added to it (see ExplorerWorld.addExplorer) */
+	public int getId();
+
 	/** gets the last sensor action taken */
 	public int getLastSensorAction();
 
 	/** returns the beliefs of the agent*/
-	public double[][] getBeliefs();
+	public Beliefs getBeliefs();
 
 	/** Each type of explorer should have a unique colour */
 	public Color getColor();
@@ -6,9 +6,6 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.*;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -17,7 +14,7 @@ import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 
-/** Handles the drawing and the timing for the simulation. Also serves as the entry point */
+/** Handles the drawing and the timing for watching a simulation. Batch runs are done headless by ExperimentRunner. */
 public class ExplorerGui {
 
 	private JFrame frame;
@@ -25,16 +22,11 @@ public class ExplorerGui {
 
 
 	/** simulation stuff */
-	private ExplorerWorld world;
-	private List<Explorer> explorers;
-	private Map<Explorer, Integer> finished;
-	private Map<Explorer, List<int[]>> paths;
-	private int step = 0; // how far through are we?
-	private int pathLength = 0;
-	private Timer timer; // just set to 0 for repeats
-	List<Result> results;
+	private Simulation simulation;
+	private Timer timer;
 
-	public ExplorerGui() {
+	/** Opens a window and runs a single trial in it, a step at a time, so we can watch. Batch runs live in ExperimentRunner. */
+	public ExplorerGui(double mapProb) {
 
 
 		// set up actual GUI stuff
@@ -55,184 +47,37 @@ public class ExplorerGui {
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		frame.setVisible(true);
 
-
-		// -1 to just watch a single trial
-		try {
-			Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream("results"), "utf-8"));
-
-			for (double mapProb = 0.01; mapProb < 1; mapProb += 0.01) {
-				setupAndRun(500, mapProb);
-				w.write(Double.toString(mapProb));
-				for (Result r : results) {
-					w.write(" " + r.averagePathLength);
-				}
-				w.write("\n");
-			}
-
-			w.close();
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-	}
-
-	private void setupAndRun(int trials, double mapProb) {
-
-		if (trials == -1) {
-			timer = new Timer(100, new ActionListener() {
-				@Override
-				public void actionPerformed(ActionEvent evt) {
-					step();
-				}
-			});
-		} else {
-			results = new ArrayList<>();
-			results.add(new Result("DumbExplorer"));
-			results.add(new Result("OptimalExplorer"));
-			results.add(new Result("EntropicExplorer"));
-			results.add(new Result("SurpriseExplorer"));
-			results.add(new Result("RandomExplorer"));
-
-		}
-		int max = (trials > 0)? trials : 1;
-		for (int i = 0; i < max; i++) {
-			// get the simulation ready
-			world = new ExplorerWorld(7,7, mapProb);
-			explorers = new ArrayList<>();
-			explorers.add(new DumbExplorer(world));
-			explorers.add(new OptimalExplorer(world));
-			explorers.add(new EntropicExplorer(world));
-			explorers.add(new SurpriseExplorer(world));
-			explorers.add(new RandomExplorer(world));
-
-			finished = new HashMap<>();
-			paths = new HashMap<>();
-			for (Explorer e : explorers) {
-				paths.put(e, new ArrayList<int[]>());
-			}
-			for (Explorer e : explorers) {
-				paths.get(e).add(world.getState(e).clone());
-			}
-
-			if (timer != null)
-				timer.start();
-			else {
-				step = 0;
-				pathLength = 0;
-
-				System.out.println("~~~~~~~~~~~~~~~~~~\n~~Start trial: "+i+"~~\n~~~~~~~~~~~~~~~~~~");
-				int cycles = 0;
-				while(step() && cycles++ < 100);
-				// and collect results
-				for (Explorer e : finished.keySet()) {
-					int index = 0; // this is kind of gross
-					if (e instanceof OptimalExplorer)
-						index = 1;
-					else if (e instanceof EntropicExplorer)
-						index = 2;
-					else if (e instanceof SurpriseExplorer)
-						index = 3;
-					else if (e instanceof RandomExplorer)
-						index = 4;
-
-					addResult(results.get(index), finished.get(e));
-				}
-			}
-
-		}
-		if (trials > 0) {
-			for (Result r : results) {
-				System.out.println(r);
-			}
-		}
-	}
-
-	/** Adds the number to the result object */
-	private void addResult(Result r, int num) {
-		r.numTrials += 1;
-		if (Double.isNaN(r.averagePathLength))
-			r.averagePathLength = num;
-		else
-			r.averagePathLength = (r.averagePathLength + num)/2;
-		if (num > r.highestPathLength)
-			r.highestPathLength = num;
-		if (num < r.lowestPathLength)
-			r.lowestPathLength = num;
-	}
-
-	/** advance the simulation to the next stage (not necessarily a full timestep) */
-	private boolean step() {
-		if (step == 0) {
-			System.out.println("~~~~~~~~~~~~~~~~");
-			System.out.println("Getting sensor actions");
-			// TODO: actually deal with multiple
-			for (Explorer e : explorers) {
-				int a = e.getSensorAction();
-			}
-		}
-		if (step == 1) {
-			System.out.println("~~~~~~~~~~~~~~~~");
-			System.out.println("Observing");
-			for (Explorer e : explorers) {
-				e.observe(world.getObservation(e.getLastSensorAction(), e));
-			}
-		}
-		if (step == 2) {
-			System.out.println("~~~~~~~~~~~~~~~~");
-			System.out.println("Getting real actions & advancing");
-
-			pathLength++;
-			List<Explorer> done = new ArrayList<>();
-			for (Explorer e: explorers) {
-				 world.advanceState(e.getAction(), e);
-				 paths.get(e).add(world.getState(e).clone());
-				 if (world.targetReached(e)) {
-					System.out.println("Success for " + e.toString());
-					System.out.println("in " + pathLength + " steps.");
-					done.add(e);
-				}
-			}
-
-			explorers.removeAll(done);
-			for (Explorer e : done) {
-				finished.put(e, pathLength);
-			}
-
-			if (explorers.isEmpty()) {
-				step = 5;
-				System.out.println("~~~~~~~~~~~~~~~~~");
-				System.out.println("~~~~~~~~~~~~~~~~~");
-				System.out.println("Results: ");
-				for (Explorer e : finished.keySet()) {
-					System.out.print("\t");
-					System.out.print(e.toString());
-					System.out.print(" -- ");
-					System.out.print(finished.get(e));
-					System.out.println(" steps");
-				}
+		ExplorerWorld world = new ExplorerWorld(7,7, mapProb);
+		world.setTrace(new ConsoleTraceSink(TraceSink.DEBUG)); // when watching we want to know what they're thinking
+		simulation = new Simulation(world, ExperimentRunner.makeExplorers(world));
+		timer = new Timer(100, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent evt) {
+				simulation.step();
+				canvas.repaint();
 			}
-			else
-				step = -1;
-		}
-		step++;
-		canvas.repaint();
-		return step < 6;
+		});
+		timer.start();
 	}
 
-
 	/** actually draws what's going on to the window */
 	private void draw(Graphics2D g) {
 		g.setColor(Color.white);
 		g.fill(g.getClip());
+		if (simulation == null)
+			return;
 
-		int[][] map = world.getMap();
+		ExplorerWorld world = simulation.getWorld();
+		List<Explorer> explorers = simulation.getExplorers();
+		Map<Explorer, List<int[]>> paths = simulation.getPaths();
+		WorldMap map = world.getMap();
 
 		// first draw the map
-		int cellSize = canvas.getWidth()/map.length;
+		int cellSize = canvas.getWidth()/map.getWidth();
 
-		for (int x = 0; x < map.length; x++) {
-			for (int y = 0; y < map[0].length; y++) {
-				switch(map[x][y]) {
+		for (int x = 0; x < map.getWidth(); x++) {
+			for (int y = 0; y < map.getHeight(); y++) {
+				switch(map.get(x, y)) {
 				case ExplorerWorld.EMPTY:
 					g.setColor(Color.white);
 					break;
@@ -265,7 +110,7 @@ public class ExplorerGui {
 
 		// draw all of our little people
 		for (Explorer e : explorers) {
-			int[] state = world.getState(e);
+			int[] state = world.getState(e.getId());
 			g.setColor(e.getColor());
 
 
@@ -294,17 +139,18 @@ public class ExplorerGui {
 		}
 
 		if (explorers.size() == 1) { // if there is only one, draw his beliefs (if he has any)
-			double[][] bel = explorers.get(0).getBeliefs();
+			Beliefs bel = explorers.get(0).getBeliefs();
 				// draw the chap
 
 
-				for (int x = 0; x < map.length; x++) {
-					for (int y = 0; y < map[0].length; y++) {
+				for (int x = 0; x < map.getWidth(); x++) {
+					for (int y = 0; y < map.getHeight(); y++) {
 						g.setColor(new Color(1.0f,0.0f,0.0f,0.5f));
-						g.fillRect((int) (x*cellSize + (1.0-bel[x][y])*(cellSize/2)),
-								   (int) (y*cellSize + (1.0-bel[x][y])*(cellSize/2)),
-								   (int) (cellSize*bel[x][y]),
-								   (int) (cellSize*bel[x][y]));
+						double b = bel.get(x, y);
+						g.fillRect((int) (x*cellSize + (1.0-b)*(cellSize/2)),
+								   (int) (y*cellSize + (1.0-b)*(cellSize/2)),
+								   (int) (cellSize*b),
+								   (int) (cellSize*b));
 					}
 
 				}
@@ -313,39 +159,13 @@ public class ExplorerGui {
 		}
 	}
 
-	/** just to store some data */
-	private static class Result {
-		public int numTrials;
-		public double averagePathLength;
-		public int highestPathLength;
-		public int lowestPathLength;
-
-		private String name;
-
-		public Result(String n) {
-			numTrials = 0;
-			averagePathLength = Double.NaN;
-			highestPathLength = Integer.MIN_VALUE;
-			lowestPathLength = Integer.MAX_VALUE;
-
-			name = n;
-		}
-
-		@Override
-		public String toString() {
-			return    "~~~"+name+"~~~\n"
-					+ "\t" + numTrials + " trials\n"
-					+ "\t" + averagePathLength + " average path length\n"
-					+ "\t" + highestPathLength + " longest path\n"
-					+ "\t" + lowestPathLength + " shortest path\n";
-		}
-	}
-
+	/** Watch a single trial. Takes an optional map density (default 0.1) */
 	public static void main(String[] args) {
+		final double mapProb = (args.length > 0)? Double.parseDouble(args[0]) : 0.1;
 		SwingUtilities.invokeLater(new Runnable() {
 			@Override
 			public void run() {
-				new ExplorerGui();
+				new ExplorerGui(mapProb);
 			}
 		});
 	}
@@ -1,8 +1,7 @@
 package explorer;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 /** Represents the world. Generates observations advances the world state,
  *  responds to queries regarding probability of observations etc.
@@ -11,8 +10,11 @@ import java.util.Random;
  */
 public class ExplorerWorld {
 
-	/** the map of the world. Three possible values, defined below */
-	private int[][] map;
+	/** the map of the world. Three possible values, defined below, packed 2 bits a cell so even very big worlds
+	 *  only take a quarter of a byte a square (see WorldMap) */
+	private WorldMap map;
+	/** size of the map */
+	private int width, height;
 	/** Empty square, should show up as white on the visualisation */
 	public static final int EMPTY = 0;
 	/** Filled square, black on the visualisation */
@@ -21,6 +23,15 @@ public class ExplorerWorld {
 	public static final int TARGET = 2;
 	/** the probability of making a correct observation. Each possible incorrect observation has a (1-observationProb)/2 chance. */
 	public double observationProbability = 0.9;
+	/** corrected beliefs smaller than this get dropped to exactly 0, so that the belief grids can stay sparse once
+	 *  the explorers have some idea where they are. 0 (the default) keeps everything, so the updates are exact. */
+	public double beliefCutoff = 0;
+	/** if true explorers made in this world keep their beliefs in the log domain, which is slower but can't underflow
+	 *  on long runs. Has to be set before the explorers are made. */
+	public boolean logBeliefs = false;
+	/** if more than 0, explorers made in this world use a particle filter with this many particles instead of a grid.
+	 *  Takes precedence over logBeliefs. Has to be set before the explorers are made. */
+	public int particles = 0;
 
 	/** Directions: these are the possible actions for both camera and agent */
 	public static final int NORTH = 0;
@@ -28,195 +39,299 @@ public class ExplorerWorld {
 	public static final int EAST = 2;
 	public static final int WEST = 3;
 
-	/** The real position of the agent, which is the state of the world. 2 elements: x then y. */
-	private Map<Explorer,int[]> state;
+	/** The real position of each agent, which is the state of the world, indexed by the id addExplorer gave it.
+	 *  Agents only ever touch their own element, so they can be stepped at the same time without locking. */
+	private int[] xs, ys;
+	/** Each agent's own stream for its observation noise, so what one agent sees doesn't depend on how many others
+	 *  there are or what order they get stepped in (or whether they're stepped at the same time) */
+	private SplittableRandom[] observationRandoms;
+	/** how many agents have been added, and so the next id */
+	private int agents;
 	/** Target position -- keep track of this for calculating rewards */
 	private int[] target;
 	/** starting position -- want it to be the same for all agents so that they can be compared */
 	private int[] start;
 
-	/** Random number generator. Can keep the seed the same to test different on the same random maps */
-	private Random rand;
+	/** Random number generator for the map and start. Can keep the seed the same to test different on the same random maps */
+	private SplittableRandom rand;
+	/** what rand was seeded with. Every other stream in this world is derived from it (see streamSeed) */
+	private long seed;
+
+	/** the different kinds of stream streamSeed hands out, so that the same number never gets used for two things */
+	private static final int OBSERVATION_STREAM = 0;
+	private static final int EXPLORER_STREAM = 1;
+	private static final int BELIEF_STREAM = 2;
+
+	/** where everybody in this world reports what they're up to. Drops everything unless told otherwise */
+	private TraceSink trace = TraceSink.NONE;
+
+	/** Successor table, indexed [action][cell]. Cells are flattened as x*h + y. Transitions are deterministic so
+	 *  each cell has exactly one successor per action, which is all we need to push beliefs forward.
+	 *
+	 *  This and the other per-cell tables are several times the size of the packed map, so they only get built when
+	 *  something asks for the whole table (belief grids, which are that big anyway). Anything sparse, like a particle
+	 *  filter, should use successor and sensed instead, which work it out from the map. Volatile as agents stepped in
+	 *  parallel can race to build them: they all build the same thing. */
+	private volatile int[][] successors;
+	/** Expected rewards of each action, shared by all the explorers in this world */
+	private ActionValueEvaluator evaluator;
+
+	/** What each sensor action actually looks at, indexed [sensor action][cell]: the value of the observed square,
+	 *  or FULL if it is off the edge. Only depends on the map so it is built once (when first asked for). */
+	private volatile byte[][] sensed;
+	/** Observation likelihoods indexed [sensor action][observation][cell], built from sensed */
+	private double[][][] likelihoods;
+	/** the observationProbability the likelihood tables were built with, so we can tell if it has been changed.
+	 *  Volatile as agents stepped in parallel can race to build the tables: they all build the same thing, and
+	 *  whoever sees the new probability is guaranteed to see the tables that went with it. */
+	private volatile double likelihoodProbability = Double.NaN;
 
 	/** Generates a (currently random) world with a randomly placed agent. Needs to know how big */
 	public ExplorerWorld(int w, int h) {
-		// get the random going
-		rand = new Random(/*0xfadefacc*/System.nanoTime());
+		this(w, h, 0.1);
+	}
 
-		target = new int[2];
-		map = noiseMap(w,h,0.1, target);
-		//map = quarteredMap(w,h,target);
-		//map = halvedMap(w,h,target);
+	/** Generates a (currently random) world with a randomly placed agent. Needs to know how big. Seeded from the clock so
+	 *  it is different every time, which is what the gui wants; anything that has to be repeatable should pass a seed */
+	public ExplorerWorld(int w, int h, double mapProb) {
+		this(w, h, mapProb, /*0xfadefacc*/System.nanoTime());
+	}
 
-		state = new HashMap<>();
+	/** As above, but seeded so that the same seed always gives the same map and starting position */
+	public ExplorerWorld(int w, int h, double mapProb, long seed) {
+		this(w, h, mapProb, seed, new NoiseMapGenerator());
+	}
 
-		//start = new int[]{rand.nextInt(map.length), rand.nextInt(map[0].length)};
-		// this time we will just choose a random corner
-		start = new int[]{rand.nextInt(2)*(map.length-1), rand.nextInt(2)*(map[0].length-1)};
-		//start = new int[]{0, h/2};
+	/** As above, with the map made by the given generator (see MapGenerator for the others, eg. quartered or halved) */
+	public ExplorerWorld(int w, int h, double mapProb, long seed, MapGenerator generator) {
+		this(null, w, h, mapProb, seed, generator);
 	}
 
-	/** Generates a (currently random) world with a randomly placed agent. Needs to know how big */
-	public ExplorerWorld(int w, int h, double mapProb) {
+	/** A world with a map that has already been made (eg. one from a MapCorpus). seed is for everything else */
+	public ExplorerWorld(WorldMap worldMap, long seed) {
+		this(worldMap, worldMap.getWidth(), worldMap.getHeight(), Double.NaN, seed, null);
+	}
+
+	/** makes the map with generator if there isn't one, then sets everything up */
+	private ExplorerWorld(WorldMap worldMap, int w, int h, double mapProb, long seed, MapGenerator generator) {
 		// get the random going
-		rand = new Random(/*0xfadefacc*/System.nanoTime());
+		rand = new SplittableRandom(seed);
+		this.seed = seed;
 
-		target = new int[2];
-		map = noiseMap(w,h,mapProb, target);
-		//map = quarteredMap(w,h,target);
-		//map = halvedMap(w,h,target);
+		if (worldMap == null)
+			worldMap = generator.generate(w, h, mapProb, rand);
+		map = worldMap;
+		width = map.getWidth();
+		height = map.getHeight();
+		target = new int[]{map.getTargetX(), map.getTargetY()};
 
-		state = new HashMap<>();
+		// the tables get built the first time anybody wants them, particle filters never do
+		evaluator = new ActionValueEvaluator(this);
 
-		//start = new int[]{rand.nextInt(map.length), rand.nextInt(map[0].length)};
+		xs = new int[8];
+		ys = new int[8];
+		observationRandoms = new SplittableRandom[8];
+
+		//start = new int[]{rand.nextInt(width), rand.nextInt(height)};
 		// this time we will just choose a random corner
-		start = new int[]{rand.nextInt(2)*(map.length-1), rand.nextInt(2)*(map[0].length-1)};
+		start = new int[]{rand.nextInt(2)*(width-1), rand.nextInt(2)*(height-1)};
 		//start = new int[]{0, h/2};
 	}
 
-	/** Starts tracking state for an explorer, initially assigning it a random location */
-	public void addExplorer(Explorer e) {
-		state.put(e, start.clone());
+	/**
+	 * Makes a new set of beliefs for an explorer in this world, of whatever kind the world has been set up for
+	 * (see particles and logBeliefs). Particles get their resampling stream seeded from the agent's id and which of its
+	 * sets this is, like the observation streams, so it doesn't matter what else got made first.
+	 * @param uniform - if true every cell starts out equally likely, otherwise there's no belief anywhere yet
+	 * @param agent - the id of the explorer they're for
+	 * @param which - which of that explorer's sets of beliefs this is: 0 for its beliefs, 1 for the spare, then
+	 * upwards for anything else it needs (eg. a planner's scratch)
+	 */
+	public Beliefs makeBeliefs(boolean uniform, int agent, int which) {
+		int w = width, h = height;
+		if (particles > 0) {
+			long beliefSeed = streamSeed(BELIEF_STREAM, ((long) agent << 16) | which);
+			return uniform? ParticleBeliefs.uniform(w, h, particles, beliefSeed) : new ParticleBeliefs(w, h, particles, beliefSeed);
+		}
+		return uniform? BeliefGrid.uniform(w, h, logBeliefs) : new BeliefGrid(w, h, logBeliefs);
 	}
 
 	/**
-	 * Makes a new map with randomly filled squares and a random target location.
-	 *
-	 * @param w - width
-	 * @param h - height
-	 * @param prob - the probability of any given square being black (except the target, that is chosen at random after having filled all the rest of the squares.
-	 * @return
+	 * Starts tracking state for an explorer, initially assigning it a random location. Also gives it its own stream
+	 * of observation noise, seeded from the world's seed and its id. Explorers all have to be added (from one
+	 * thread) before the world gets stepped, as the arrays might get moved.
+	 * @return the explorer's id: 0 for the first one, then 1, 2... Everything else here wants that rather than the explorer
 	 */
-	private int[][] noiseMap(int w, int h, double prob, int[] target) {
-		int[][] map = new int[w][h];
-
-		for (int i = 0; i < w; i++)
-			for (int j = 0; j < h; j++) {
-				if (rand.nextDouble() < prob)
-					map[i][j] = FULL;
-			}
-
-		// finally the target
-		target[0] = w/2;//rand.nextInt(w);
-		target[1] = h/2;//rand.nextInt(h);
-		map[target[0]][target[1]] = TARGET;
+	public int addExplorer(Explorer e) {
+		int id = agents++;
+		if (id == xs.length) {
+			xs = Arrays.copyOf(xs, 2*id);
+			ys = Arrays.copyOf(ys, 2*id);
+			observationRandoms = Arrays.copyOf(observationRandoms, 2*id);
+		}
+		xs[id] = start[0];
+		ys[id] = start[1];
+		observationRandoms[id] = new SplittableRandom(streamSeed(OBSERVATION_STREAM, id));
+		return id;
+	}
 
-		return map;
+	/**
+	 * A random number stream for an explorer to make its own choices with. Depends only on the world's seed (and so
+	 * the experiment seed, density and trial) and the explorer's id, so it comes out the same however the explorers
+	 * are scheduled.
+	 */
+	public SplittableRandom makeExplorerRandom(int agent) {
+		return new SplittableRandom(streamSeed(EXPLORER_STREAM, agent));
 	}
 
-	/** Makes a map with four distinct patterns, one per quarter */
-	private int[][] quarteredMap(int w, int h, int[] target) {
-		int[][] map = new int[w][h];
+	/**
+	 * The seed for stream number index of the given kind. The kind and index get hashed together and added to the
+	 * world's seed then hashed again, as SplittableRandoms with nearby seeds give overlapping streams.
+	 */
+	private long streamSeed(int kind, long index) {
+		return mix(seed + mix((index << 2) | kind));
+	}
 
-		// top left gets vertical bands
-		for (int x = 0; x <= w/2; x++)
-			for (int y = 0; y < h/2; y++) {
-				if (x % 2 == 0)
-					map[x][y] = FULL;
-				else
-					map[x][y] = EMPTY;
-			}
+	/** the splitmix64 finaliser */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
 
-		// top right gets horizontal
-		for (int x = w/2+1; x < w; x++)
-			for (int y = 0; y < h/2; y++) {
-				if (y % 2 == 0)
-					map[x][y] = FULL;
-				else
-					map[x][y] = EMPTY;
-			}
-		// bottom left gets a checkerboard
-		for (int x = 0; x <= w/2; x++)
-			for (int y = h/2; y < h; y++) {
-				if ((y+x)%2 == 0)
-					map[x][y] = FULL;
-				else
-					map[x][y] = EMPTY;
-			}
+	/** how many explorers have been added */
+	public int getAgentCount() {
+		return agents;
+	}
 
-		// bottom right gets something else
-		for (int x = w/2+1; x < w; x++)
-			for (int y = h/2; y < h; y++) {
-				if ((y/x)%2 == 0)
-					map[x][y] = FULL;
-				else
-					map[x][y] = EMPTY;
-			}
+	/**
+	 * The (flattened) cell you end up in from cell i after action b. Has to agree with transitionProbability and
+	 * advanceState: moving off the edge leaves you where you were.
+	 */
+	public int successor(int b, int i) {
+		int h = height;
+		switch(b) {
+		case NORTH:
+			return (i % h > 0)? i-1 : i;
+		case SOUTH:
+			return (i % h < h-1)? i+1 : i;
+		case EAST:
+			return (i < (width-1)*h)? i+h : i;
+		default:
+			return (i >= h)? i-h : i;
+		}
+	}
 
-		// finally the target
-		target[0] = w/2;//rand.nextInt(w);
-		target[1] = h/2;//rand.nextInt(h);
-		map[target[0]][target[1]] = TARGET;
+	/** What sensor action a looks at from cell i: the true value of the square, FULL off the edge */
+	public int sensed(int a, int i) {
+		int h = height;
+		switch(a) { // the edge is all full
+		case NORTH:
+			return (i % h > 0)? map.get(i-1) : FULL;
+		case SOUTH:
+			return (i % h < h-1)? map.get(i+1) : FULL;
+		case EAST:
+			return (i < (width-1)*h)? map.get(i+h) : FULL;
+		default:
+			return (i >= h)? map.get(i-h) : FULL;
+		}
+	}
 
-		return map;
+	/** Builds the successor table from successor */
+	private int[][] buildSuccessors() {
+		int[][] succ = new int[4][width*height];
+		for (int b = 0; b < succ.length; b++)
+			for (int i = 0; i < succ[b].length; i++)
+				succ[b][i] = successor(b, i);
+		return succ;
 	}
 
-	/** makes a map with two different patterns */
-	private int[][] halvedMap(int w, int h, int[] target) {
-		int[][] map = new int[w][h];
+	/** Works out what each sensor action sees from each cell */
+	private byte[][] buildSensed() {
+		byte[][] seen = new byte[4][width*height];
+		for (int a = 0; a < seen.length; a++)
+			for (int i = 0; i < seen[a].length; i++)
+				seen[a][i] = (byte) sensed(a, i);
+		return seen;
+	}
 
-		// top gets vertical bands
-		for (int x = 0; x < w; x++)
-			for (int y = 0; y < h/2; y++) {
-				if (x % 2 == 0)
-					map[x][y] = FULL;
-				else
-					map[x][y] = EMPTY;
+	/** (Re)builds the likelihood tables for the current observationProbability */
+	private void buildLikelihoods() {
+		double p = observationProbability, q = (1-p)/2.0;
+		double[][][] table = new double[4][3][width*height];
+		for (int a = 0; a < table.length; a++) {
+			byte[] seen = getSensed(a);
+			for (int y = 0; y < table[a].length; y++) {
+				for (int i = 0; i < seen.length; i++)
+					table[a][y][i] = (seen[i] == y)? p : q;
 			}
+		}
+		likelihoods = table;
+		likelihoodProbability = p;
+	}
 
-		// bottom gets horizontal
-		for (int x = 0; x < w; x++)
-			for (int y = h/2; y < h; y++) {
-				if (y % 2 == 0)
-					map[x][y] = FULL;
-				else
-					map[x][y] = EMPTY;
-			}
+	/**
+	 * Returns P(obs | cell) for every cell after looking in direction a, laid out like the successor table.
+	 * The correction step is then just an element-wise multiply. Rebuilt if observationProbability has changed. Don't modify it.
+	 */
+	public double[] getLikelihoods(int a, int obs) {
+		if (likelihoodProbability != observationProbability)
+			buildLikelihoods();
+		return likelihoods[a][obs];
+	}
 
-		// finally the target
-		target[0] = w/2;//rand.nextInt(w);
-		target[1] = h/2;//rand.nextInt(h);
-		map[target[0]][target[1]] = TARGET;
+	/**
+	 * Returns what sensor action a looks at from each cell (the true value of the square, FULL off the edge), building
+	 * the table if it isn't there yet. Don't modify it.
+	 */
+	public byte[] getSensed(int a) {
+		byte[][] table = sensed;
+		if (table == null)
+			sensed = table = buildSensed();
+		return table[a];
+	}
 
-		return map;
+	/**
+	 * Returns the successor table for action b: element i is the (flattened) cell you end up in from cell i. Built
+	 * the first time it's asked for. Don't modify it.
+	 */
+	public int[] getSuccessors(int b) {
+		int[][] table = successors;
+		if (table == null)
+			successors = table = buildSuccessors();
+		return table[b];
+	}
+
+	/** flattens a cell, same layout as the successor table */
+	public int cellIndex(int x, int y) {
+		return x*height + y;
 	}
 
 	/** Gets the reward for the given state. Currently this is the negative Manhattan distance in order to pretend that we've learnt a value function */
 	public double getReward(int[] state) {
-		return -(Math.abs(state[0] - target[0]) + Math.abs(state[1]-target[1]));
+		return getReward(state[0], state[1]);
+	}
+
+	/** Same as above, without needing an array */
+	public double getReward(int x, int y) {
+		return -(Math.abs(x - target[0]) + Math.abs(y-target[1]));
+	}
+
+	/** Returns the evaluator for the expected reward of actions in this world */
+	public ActionValueEvaluator getActionValueEvaluator() {
+		return evaluator;
 	}
 
 	/** returns the probability of a given state + sensor action producing a given observation.
 	 * If an observation would look off the edge of the map, it will always be full. */
 	public double observationProbability(int y, int a, int agentX, int agentY) {
-		int obsX = agentX,obsY = agentY; // coordinates of the square being observed
-		switch(a) {
-		case NORTH:
-			obsY -= 1;
-			break;
-		case SOUTH:
-			obsY += 1;
-			break;
-		case WEST:
-			obsX -= 1;
-			break;
-		case EAST:
-			obsX += 1;
-			break;
-		default:
+		if (a < NORTH || a > WEST) {
 			System.err.println("(World) unknown sensor action: " + a);
 			return -1;
 		}
-
-		if (obsX >= map.length || obsX < 0 || obsY >= map[0].length || obsY < 0) {
-			if (y == FULL)
-				return observationProbability;
+		if (y < EMPTY || y > TARGET)
 			return (1-observationProbability)/2.0;
-		}
-		// otherwise we need to check
-		if (y == map[obsX][obsY])
-			return observationProbability;
-		return (1-observationProbability)/2.0;
+		return getLikelihoods(a, y)[cellIndex(agentX, agentY)];
 	}
 
 	/**
@@ -242,7 +357,7 @@ public class ExplorerWorld {
 			// what about south?
 			if (newX == oldX && // the X must be the same
 				(newY-oldY == 1 || // and they must either be one apart (in the right direction)
-				 (oldY == newY && oldY == map[0].length-1))) // or be bashing one's head against the wall
+				 (oldY == newY && oldY == height-1))) // or be bashing one's head against the wall
 				return 1;
 			return 0;
 
@@ -250,7 +365,7 @@ public class ExplorerWorld {
 			// east (right)
 			if (newY == oldY && // can't have movd vertically
 				(newX-oldX == 1 || // horizontally one to the right (old should be 1 smaller than new)
-				 (oldX == newX && oldX == map.length-1))) // or be bashing one's head against the wall
+				 (oldX == newX && oldX == width-1))) // or be bashing one's head against the wall
 				return 1;
 			return 0;
 
@@ -267,10 +382,10 @@ public class ExplorerWorld {
 		}
 	}
 
-	/** generates an observation */
-	public int getObservation(int a, Explorer e) {
-		int ox = state.get(e)[0];
-		int oy = state.get(e)[1]; // coordinates of the square to be observed
+	/** generates an observation for the given agent, using its own noise so that different agents can ask at the same time */
+	public int getObservation(int a, int agent) {
+		int ox = xs[agent];
+		int oy = ys[agent]; // coordinates of the square to be observed
 		switch(a) {
 		case NORTH:
 			oy -= 1;
@@ -289,8 +404,8 @@ public class ExplorerWorld {
 		}
 
 
-		double r = rand.nextDouble();
-		if (ox >= map.length || ox < 0 || oy >= map[0].length || oy < 0) { // the edge is all full
+		double r = observationRandoms[agent].nextDouble();
+		if (ox >= width || ox < 0 || oy >= height || oy < 0) { // the edge is all full
 			if (r < observationProbability)
 				return FULL;
 			if (r < observationProbability + (1-observationProbability)/2)
@@ -299,26 +414,26 @@ public class ExplorerWorld {
 		}
 		// otherwise
 		if (r < observationProbability)
-			return map[ox][oy];
+			return map.get(ox, oy);
 		if (r < observationProbability + (1-observationProbability)/2)
-			return wrapIntoRange(map[ox][oy]+1, EMPTY, TARGET);
-		return wrapIntoRange(map[ox][oy]+2, EMPTY, TARGET);
+			return wrapIntoRange(map.get(ox, oy)+1, EMPTY, TARGET);
+		return wrapIntoRange(map.get(ox, oy)+2, EMPTY, TARGET);
 	}
 
-	/** Moves the state on given a manipulatory action */
-	public void advanceState(int b, Explorer e) { // TODO: stochastic
+	/** Moves the agent on given a manipulatory action. Only touches its own state, so agents can move at the same time */
+	public void advanceState(int b, int agent) { // TODO: stochastic
 		switch(b) {
 		case NORTH:
-			state.get(e)[1] = Math.max(0, state.get(e)[1]-1);
+			ys[agent] = Math.max(0, ys[agent]-1);
 			break;
 		case SOUTH:
-			state.get(e)[1] = Math.min(state.get(e)[1]+1, map[0].length-1);
+			ys[agent] = Math.min(ys[agent]+1, height-1);
 			break;
 		case EAST:
-			state.get(e)[0] = Math.min(state.get(e)[0]+1, map.length-1);
+			xs[agent] = Math.min(xs[agent]+1, width-1);
 			break;
 		case WEST:
-			state.get(e)[0] = Math.max(0, state.get(e)[0]-1);
+			xs[agent] = Math.max(0, xs[agent]-1);
 			break;
 		default:
 			break;
@@ -335,18 +450,26 @@ public class ExplorerWorld {
 	}
 
 
-	/** Returns the map, for the purposes of drawing it */
-	public int[][] getMap() {
+	/** Returns the map, for the purposes of drawing it. Don't modify it */
+	public WorldMap getMap() {
 		return map;
 	}
 
-	/** Returns the true state in order to draw it */
-	public int[] getState(Explorer e) {
-		return state.get(e);
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/** Returns (a copy of) an agent's true state, x then y, in order to draw it */
+	public int[] getState(int agent) {
+		return new int[]{xs[agent], ys[agent]};
 	}
 
 	/** returns NORTH, SOUTH, EAST or WEST as appropriate */
-	public String actionToString(int a) {
+	public static String actionToString(int a) {
 		switch(a) {
 		case WEST:
 			return "WEST";
@@ -361,8 +484,17 @@ public class ExplorerWorld {
 		}
 	}
 
+	public TraceSink getTrace() {
+		return trace;
+	}
+
+	/** sets where the explorers and simulation in this world send their traces */
+	public void setTrace(TraceSink trace) {
+		this.trace = trace;
+	}
+
 	/** has the agent reached the target? */
-	public boolean targetReached(Explorer e) {
-		return state.get(e)[0] == target[0] && state.get(e)[1] == target[1];
+	public boolean targetReached(int agent) {
+		return xs[agent] == target[0] && ys[agent] == target[1];
 	}
 }
@@ -0,0 +1,35 @@
+package explorer;
+
+import java.util.SplittableRandom;
+
+/** makes a map with two different patterns. Doesn't need density or any randomness */
+public class HalvedMapGenerator implements MapGenerator {
+
+	@Override
+	public String getName() {
+		return "halved";
+	}
+
+	@Override
+	public WorldMap generate(int w, int h, double density, SplittableRandom rand) {
+		WorldMap map = new WorldMap(w, h);
+
+		// top gets vertical bands
+		for (int x = 0; x < w; x++)
+			for (int y = 0; y < h/2; y++) {
+				if (x % 2 == 0)
+					map.set(x, y, ExplorerWorld.FULL);
+			}
+
+		// bottom gets horizontal
+		for (int x = 0; x < w; x++)
+			for (int y = h/2; y < h; y++) {
+				if (y % 2 == 0)
+					map.set(x, y, ExplorerWorld.FULL);
+			}
+
+		// finally the target
+		map.setTarget(w/2, h/2);
+		return map;
+	}
+}
@@ -0,0 +1,264 @@
+package explorer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Plans several sense, observe, act cycles ahead rather than just the next one, by expectimax over the beliefs:
+ * the value of some beliefs with d cycles to go is the best sensor action's expected (over what we might see)
+ * value of the best action afterwards, where an action is worth its expected reward plus the discounted value of
+ * where it leaves our beliefs with d-1 to go. With one cycle to go that is exactly what OptimalExplorer's table does.
+ *
+ * The tree gets big fast (48 branches a cycle) so:
+ *  - it deepens one cycle at a time until it runs out of budget, and uses the deepest search that finished (anytime)
+ *  - values are memoised by a hash of the beliefs and the depth, as different routes often end up believing the same.
+ *    Keeping a copy of every set of beliefs to check against would take up far too much room on the big maps, so
+ *    each entry keeps a second, independent hash and the number of cells instead, and a hit only counts if those
+ *    match too. Different beliefs getting past that means two 64 bit hashes colliding at once on the same size
+ *    support, which in a few thousand entries a plan isn't going to happen
+ *  - observations less likely than pruneProbability aren't searched any deeper, they just get their immediate reward
+ *
+ * The budget is either time, which is nice when watching but means a busy machine plans less far ahead, or (with
+ * setNodeBudget) a number of nodes, which always stops in the same place so runs can be repeated.
+ * @author mathewpaul1
+ *
+ */
+public class LookaheadPlanner {
+
+	private static final int[] SENSOR_ACTIONS = {ExplorerWorld.NORTH, ExplorerWorld.SOUTH, ExplorerWorld.WEST, ExplorerWorld.EAST};
+	private static final int[] ACTIONS = SENSOR_ACTIONS;
+	private static final int[] OBSERVATIONS = {ExplorerWorld.EMPTY, ExplorerWorld.FULL, ExplorerWorld.TARGET};
+
+	private final ExplorerWorld world;
+	private final ActionValueEvaluator evaluator;
+	private final int maxDepth;
+	private final long budgetNanos;
+	private double discount = 0.9;
+	private double pruneProbability = 1e-3;
+
+	/** scratch grids for each level of the search: the beliefs after observing, and after acting. Made by setAgent */
+	private Beliefs[] posteriors, predictions;
+	/** scratch for the expected rewards at each level */
+	private final double[][] values;
+
+	/** value of beliefs with some number of cycles to go, keyed by beliefHash(beliefs, depth) */
+	private final Map<Long, Memo> memo = new HashMap<>();
+	/** the check hash and number of cells of the beliefs beliefHash last looked at */
+	private long check;
+	private int cells;
+	private long deadline;
+	/** if more than 0, how many nodes (beliefs below the root that weren't in the memo) a plan can expand instead of a time */
+	private long nodeBudget = 0;
+	/** how many the current plan has expanded */
+	private long nodes;
+	private boolean outOfTime;
+
+	/** what the search at the current depth would do: the sensor action, and the action after each observation */
+	private int searchSensorAction;
+	private final int[] searchActions = new int[OBSERVATIONS.length];
+	/** the root's best action for every sensor action and observation, until we know which sensor action wins */
+	private final int[][] rootActions = new int[4][OBSERVATIONS.length];
+	/** the same, from the deepest search that finished */
+	private int sensorAction;
+	private final int[] actions = new int[OBSERVATIONS.length];
+	private int depthReached;
+
+	/**
+	 * @param world - the world we're planning in
+	 * @param maxDepth - how many cycles ahead to look at most
+	 * @param budgetMillis - roughly how long each decision can take. The first cycle always gets done, however long it takes
+	 */
+	public LookaheadPlanner(ExplorerWorld world, int maxDepth, long budgetMillis) {
+		this.world = world;
+		this.evaluator = world.getActionValueEvaluator();
+		this.maxDepth = maxDepth;
+		this.budgetNanos = budgetMillis * 1000000L;
+		values = new double[maxDepth][4];
+	}
+
+	/**
+	 * Says which explorer this is planning for, and makes the scratch beliefs (the same kind the explorers have)
+	 * for it, so that particles get seeded from its id. OptimalExplorer does this when it's given the planner.
+	 */
+	void setAgent(int agent) {
+		posteriors = new Beliefs[maxDepth];
+		predictions = new Beliefs[maxDepth];
+		for (int level = 0; level < maxDepth; level++) {
+			posteriors[level] = world.makeBeliefs(false, agent, 2 + 2*level); // after the explorer's own two
+			predictions[level] = world.makeBeliefs(false, agent, 3 + 2*level);
+		}
+	}
+
+	/** how much less a reward a cycle later is worth */
+	public void setDiscount(double discount) {
+		this.discount = discount;
+	}
+
+	/**
+	 * Stops each plan after expanding this many nodes, rather than after budgetMillis, so that what it decides
+	 * doesn't depend on how fast the machine is or what else it's doing. 0 to go back to the clock.
+	 */
+	public void setNodeBudget(long nodeBudget) {
+		this.nodeBudget = nodeBudget;
+	}
+
+	/** observations less likely than this don't get searched past the immediate reward */
+	public void setPruneProbability(double pruneProbability) {
+		this.pruneProbability = pruneProbability;
+	}
+
+	/**
+	 * Searches from the given beliefs, deeper and deeper until the budget is used up or we hit maxDepth.
+	 * @return the sensor action to take
+	 */
+	public int plan(Beliefs beliefs) {
+		long start = System.nanoTime();
+		deadline = start + budgetNanos;
+		nodes = 0;
+		memo.clear();
+		for (int depth = 1; depth <= maxDepth; depth++) {
+			outOfTime = false;
+			value(beliefs, depth, 0);
+			if (outOfTime)
+				break; // this one didn't finish, so stick with the last one
+			sensorAction = searchSensorAction;
+			System.arraycopy(searchActions, 0, actions, 0, actions.length);
+			depthReached = depth;
+			if (spent())
+				break;
+		}
+		return sensorAction;
+	}
+
+	/** has the current plan used up its budget? */
+	private boolean spent() {
+		if (nodeBudget > 0)
+			return nodes >= nodeBudget;
+		return System.nanoTime() > deadline;
+	}
+
+	/** The action to take having seen obs, after looking where plan said to */
+	public int getAction(int obs) {
+		return actions[obs];
+	}
+
+	/** how many nodes the last plan expanded, eg. for picking a node budget */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/** how many cycles ahead the last plan looked */
+	public int getDepthReached() {
+		return depthReached;
+	}
+
+	/**
+	 * The expectimax value of having these beliefs with depth cycles to go. At the root (level 0) it also keeps
+	 * track of the choices, in searchSensorAction and searchActions. Gives up (setting outOfTime) if the budget runs
+	 * out, except on the first cycle so that there's always something to go on.
+	 */
+	private double value(Beliefs beliefs, int depth, int level) {
+		if (depth == 0)
+			return 0;
+		long key = 0;
+		if (level > 0) {
+			key = beliefHash(beliefs, depth);
+			Memo known = memo.get(key);
+			if (known != null && known.check == check && known.cells == cells)
+				return known.value;
+			if (spent()) { // (never happens when looking one cycle ahead, as that doesn't go below the root)
+				outOfTime = true;
+				return 0;
+			}
+			nodes++;
+		}
+
+		Beliefs posterior = posteriors[level], predicted = predictions[level];
+		double[] rewards = values[level];
+		double best = Double.NEGATIVE_INFINITY;
+		for (int a : SENSOR_ACTIONS) {
+			double total = 0;
+			for (int y : OBSERVATIONS) {
+				double probability = beliefs.correct(world, a, y, posterior);
+				if (probability <= 0) // can't happen, so doesn't count
+					continue;
+				posterior.normalise(probability);
+				evaluator.evaluate(posterior, rewards);
+				int bstar = -1;
+				double bstarval = Double.NEGATIVE_INFINITY;
+				for (int b : ACTIONS) {
+					double v = rewards[b];
+					if (depth > 1 && probability >= pruneProbability) {
+						posterior.predict(world, b, predicted);
+						predicted.normalise();
+						v += discount * value(predicted, depth - 1, level + 1);
+						if (outOfTime)
+							return 0;
+					}
+					if (ActionValueEvaluator.beats(v, bstarval)) {
+						bstarval = v;
+						bstar = b;
+					}
+				}
+				total += probability * bstarval;
+				if (level == 0)
+					rootActions[a][y] = bstar;
+			}
+			if (ActionValueEvaluator.beats(total, best)) {
+				best = total;
+				if (level == 0)
+					searchSensorAction = a;
+			}
+		}
+		if (level > 0)
+			memo.put(key, new Memo(check, cells, best));
+		else
+			System.arraycopy(rootActions[searchSensorAction], 0, searchActions, 0, searchActions.length);
+		return best;
+	}
+
+	/**
+	 * A 64 bit hash of the beliefs (their exact bits, and where they are) and the depth. Only the support gets
+	 * looked at, and the cells are added up rather than chained so the order it comes in doesn't matter. Also works
+	 * out a second hash, mixed differently, and how many cells have anything in them, and leaves them in check and
+	 * cells for the memo to compare against.
+	 */
+	private long beliefHash(Beliefs beliefs, int depth) {
+		long hash = mix(depth), second = mix(~depth);
+		int count = 0;
+		int support = beliefs.supportSize();
+		for (int k = 0; k < support; k++) {
+			int i = beliefs.supportCell(k);
+			double b = beliefs.supportWeight(k);
+			if (b != 0) {
+				long bits = Double.doubleToLongBits(b);
+				hash += mix(bits ^ mix(i));
+				second += mix(mix(bits + 0x9e3779b97f4a7c15L) + i);
+				count++;
+			}
+		}
+		check = second;
+		cells = count;
+		return hash;
+	}
+
+	/** splitmix64's finaliser */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/** a memoised value, and what to check the beliefs it was for against */
+	private static class Memo {
+		final long check;
+		final int cells;
+		final double value;
+
+		Memo(long check, int cells, double value) {
+			this.check = check;
+			this.cells = cells;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package explorer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.SplittableRandom;
+
+/**
+ * A file full of maps that all have the same size, so that a set of benchmark maps can be made once and then used
+ * over and over, on any machine. The file is:
+ *     int magic, int version, int width, int height, int count, double density, then the generator's name (a
+ *     short length then that many bytes of utf-8), padded out to HEADER_BYTES
+ * then count maps, each:
+ *     int targetX, int targetY, then the cells packed the same way as WorldMap (WorldMap.bytesFor bytes)
+ * Every map is the same size so finding one is just arithmetic, and get hands out a WorldMap that is a view
+ * straight onto the memory-mapped file, so nothing gets read or copied until the cells are actually looked at
+ * (and then only the pages that are, by the operating system).
+ *
+ * To make one:
+ *     java explorer.MapCorpus --map maze --size 64x64 --density 0.3 --count 1000 --seed 1 --out maps
+ * @author mathewpaul1
+ *
+ */
+public class MapCorpus implements Closeable {
+
+	static final int MAGIC = 0x45584d43; // "EXMC"
+	static final int VERSION = 1;
+	/** room for the header, so that the maps start at a nice round offset */
+	static final int HEADER_BYTES = 256;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final int width, height, count;
+	private final double density;
+	private final String generator;
+	private final long mapBytes;
+
+	/** Opens an existing corpus. Nothing much is read until maps are asked for */
+	public MapCorpus(File path) throws IOException {
+		file = new RandomAccessFile(path, "r");
+		channel = file.getChannel();
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+		if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+			close();
+			throw new IOException(path + " isn't a map corpus (or is from a different version)");
+		}
+		width = header.getInt();
+		height = header.getInt();
+		count = header.getInt();
+		density = header.getDouble();
+		byte[] name = new byte[header.getShort()];
+		header.get(name);
+		generator = new String(name, "utf-8");
+		mapBytes = 8 + WorldMap.bytesFor(width, height);
+		if (channel.size() < HEADER_BYTES + count*mapBytes) {
+			close();
+			throw new IOException(path + " is too short, it should have " + count + " maps in it");
+		}
+	}
+
+	/**
+	 * Makes a corpus of count maps from the given generator. Map i is made with its own stream, split off in turn
+	 * from one seeded with seed, so the same arguments always give the same file.
+	 */
+	public static void create(File path, MapGenerator generator, int width, int height, double density, int count, long seed) throws IOException {
+		long mapBytes = 8 + WorldMap.bytesFor(width, height);
+		try (RandomAccessFile out = new RandomAccessFile(path, "rw")) {
+			out.setLength(0);
+			FileChannel channel = out.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			byte[] name = generator.getName().getBytes("utf-8");
+			if (name.length > HEADER_BYTES - 30)
+				throw new IllegalArgumentException("generator name too long: " + generator.getName());
+			header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(count).putDouble(density);
+			header.putShort((short) name.length).put(name);
+			header.clear();
+			channel.write(header, 0);
+
+			SplittableRandom rand = new SplittableRandom(seed);
+			ByteBuffer target = ByteBuffer.allocate(8);
+			for (int i = 0; i < count; i++) {
+				WorldMap map = generator.generate(width, height, density, rand.split());
+				long offset = HEADER_BYTES + i*mapBytes;
+				target.clear();
+				target.putInt(map.getTargetX()).putInt(map.getTargetY()).flip();
+				channel.write(target, offset);
+				ByteBuffer cells = map.cells();
+				while (cells.hasRemaining())
+					channel.write(cells, offset + 8 + cells.position());
+			}
+			channel.force(true);
+		}
+	}
+
+	/** Map i, as a read-only view onto the file. Fine to call from several threads at once */
+	public WorldMap get(int i) throws IOException {
+		if (i < 0 || i >= count)
+			throw new IndexOutOfBoundsException("map " + i + " of " + count);
+		ByteBuffer record = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + i*mapBytes, mapBytes);
+		int targetX = record.getInt(), targetY = record.getInt();
+		return new WorldMap(width, height, targetX, targetY, record.slice());
+	}
+
+	public int size() {
+		return count;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/** the density the maps were made with */
+	public double getDensity() {
+		return density;
+	}
+
+	/** the name of the generator the maps were made with */
+	public String getGenerator() {
+		return generator;
+	}
+
+	/** Closes the file. Maps already handed out stay usable */
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	public static void main(String[] args) throws IOException {
+		String map = "noise", out = null;
+		int w = 7, h = 7, count = 1000;
+		double density = 0.1;
+		long seed = System.nanoTime();
+		for (int i = 0; i < args.length; i++) {
+			switch(args[i]) {
+			case "--map":
+				map = args[++i];
+				break;
+			case "--size":
+				String[] size = args[++i].split("x");
+				w = Integer.parseInt(size[0]);
+				h = Integer.parseInt(size[size.length-1]);
+				break;
+			case "--density":
+				density = Double.parseDouble(args[++i]);
+				break;
+			case "--count":
+				count = Integer.parseInt(args[++i]);
+				break;
+			case "--seed":
+				seed = Long.parseLong(args[++i]);
+				break;
+			case "--out":
+				out = args[++i];
+				break;
+			default:
+				out = null;
+				i = args.length;
+			}
+		}
+		if (out == null) {
+			System.err.println("usage: MapCorpus [--map noise|quartered|halved|maze|perlin|...] [--size WxH] [--density p] [--count n] [--seed s] --out file");
+			System.exit(1);
+		}
+		long start = System.nanoTime();
+		create(new File(out), MapGenerator.forName(map), w, h, density, count, seed);
+		System.err.println("(MapCorpus) " + count + " " + w + "x" + h + " " + map + " maps in " + (System.nanoTime() - start)/1000000 + "ms");
+	}
+}
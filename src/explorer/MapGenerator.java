@@ -0,0 +1,50 @@
+package explorer;
+
+import java.util.ServiceLoader;
+import java.util.SplittableRandom;
+
+/**
+ * Something that makes maps for ExplorerWorld. The built in ones are "noise" (the usual, every square full with
+ * probability density), "quartered", "halved", "maze" and "perlin". Others can be plugged in without touching
+ * this code by putting them on the classpath with a META-INF/services/explorer.MapGenerator file naming them, the
+ * usual ServiceLoader way, and asking for them by name.
+ *
+ * Generators should put the target in the middle (w/2, h/2) like the built in ones, and only take their
+ * randomness from the rand they're given so that the same seed gives the same map.
+ * @author mathewpaul1
+ *
+ */
+public interface MapGenerator {
+
+	/** what it is called on the command line */
+	public String getName();
+
+	/**
+	 * Makes a w by h map.
+	 * @param density - roughly what fraction of the map should be full, for the generators where that means anything
+	 * @param rand - where all the randomness has to come from
+	 */
+	public WorldMap generate(int width, int height, double density, SplittableRandom rand);
+
+	/** The generator with the given name: one of the built in ones, or else one found by ServiceLoader */
+	public static MapGenerator forName(String name) {
+		switch(name) {
+		case "noise":
+			return new NoiseMapGenerator();
+		case "quartered":
+			return new QuarteredMapGenerator();
+		case "halved":
+			return new HalvedMapGenerator();
+		case "maze":
+			return new MazeMapGenerator();
+		case "perlin":
+			return new PerlinMapGenerator();
+		default:
+			for (MapGenerator generator : ServiceLoader.load(MapGenerator.class)) {
+				if (generator.getName().equals(name))
+					return generator;
+			}
+			throw new IllegalArgumentException("unknown map generator: " + name);
+		}
+	}
+}
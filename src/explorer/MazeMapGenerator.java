@@ -0,0 +1,72 @@
+package explorer;
+
+import java.util.SplittableRandom;
+
+/**
+ * A maze: squares with both coordinates even are rooms, and a random depth first search knocks through the walls
+ * between them so that every room is joined up without any loops (the recursive backtracker, done with an array
+ * as the stack so that big mazes don't run out of stack). Then each wall that's left stays up with probability
+ * density, so 1 gives a perfect maze and lower gives loops and open areas.
+ *
+ * (Full squares don't actually stop the explorers moving, but the long corridors make for lots of places that
+ * look the same.)
+ * @author mathewpaul1
+ *
+ */
+public class MazeMapGenerator implements MapGenerator {
+
+	private static final int[] DX = {0, 0, 1, -1};
+	private static final int[] DY = {-1, 1, 0, 0};
+
+	@Override
+	public String getName() {
+		return "maze";
+	}
+
+	@Override
+	public WorldMap generate(int w, int h, double density, SplittableRandom rand) {
+		WorldMap map = new WorldMap(w, h);
+		for (int i = 0; i < w*h; i++)
+			map.set(i, ExplorerWorld.FULL);
+
+		int roomsX = (w+1)/2, roomsY = (h+1)/2;
+		boolean[] visited = new boolean[roomsX*roomsY];
+		int[] stack = new int[roomsX*roomsY];
+		int top = 0;
+		stack[top++] = 0;
+		visited[0] = true;
+		map.set(0, 0, ExplorerWorld.EMPTY);
+		int[] options = new int[4];
+		while (top > 0) {
+			int room = stack[top-1];
+			int rx = room / roomsY, ry = room % roomsY;
+			int count = 0;
+			for (int d = 0; d < 4; d++) {
+				int nx = rx + DX[d], ny = ry + DY[d];
+				if (nx >= 0 && nx < roomsX && ny >= 0 && ny < roomsY && !visited[nx*roomsY + ny])
+					options[count++] = d;
+			}
+			if (count == 0) { // dead end, back up
+				top--;
+				continue;
+			}
+			int d = options[rand.nextInt(count)];
+			int nx = rx + DX[d], ny = ry + DY[d];
+			map.set(2*rx + DX[d], 2*ry + DY[d], ExplorerWorld.EMPTY); // the wall in between
+			map.set(2*nx, 2*ny, ExplorerWorld.EMPTY);
+			visited[nx*roomsY + ny] = true;
+			stack[top++] = nx*roomsY + ny;
+		}
+
+		if (density < 1) {
+			for (int i = 0; i < w*h; i++) {
+				if (map.get(i) == ExplorerWorld.FULL && rand.nextDouble() >= density)
+					map.set(i, ExplorerWorld.EMPTY);
+			}
+		}
+
+		// finally the target
+		map.setTarget(w/2, h/2);
+		return map;
+	}
+}
@@ -0,0 +1,42 @@
+package explorer;
+
+import java.util.SplittableRandom;
+
+/**
+ * Fills every square independently with probability density, then puts the target in the middle. This is the map
+ * ExplorerWorld has always made, and for a given seed it still comes out exactly the same.
+ *
+ * It goes through the cells in order a byte (four cells) at a time, so each byte gets written once rather than
+ * read and rewritten for every cell, and compares the random bits against a threshold as a long rather than making
+ * a double out of them (which is the same test, as nextDouble is just the top 53 bits over 2^53).
+ * @author mathewpaul1
+ *
+ */
+public class NoiseMapGenerator implements MapGenerator {
+
+	@Override
+	public String getName() {
+		return "noise";
+	}
+
+	@Override
+	public WorldMap generate(int width, int height, double density, SplittableRandom rand) {
+		WorldMap map = new WorldMap(width, height);
+		// nextDouble() < density exactly when the 53 bits it is made from are less than this
+		long threshold = (long) Math.ceil(density * 0x1.0p53);
+		int n = width*height;
+		int packed = 0;
+		for (int i = 0; i < n; i++) {
+			if ((rand.nextLong() >>> 11) < threshold)
+				packed |= ExplorerWorld.FULL << ((i & 3) << 1);
+			if ((i & 3) == 3 || i == n-1) {
+				map.setPacked(i & ~3, packed);
+				packed = 0;
+			}
+		}
+
+		// finally the target
+		map.setTarget(width/2, height/2);
+		return map;
+	}
+}
@@ -10,13 +10,19 @@ import java.awt.Color;
 public class OptimalExplorer implements Explorer {
 
 	private ExplorerWorld world;
+	/** who we are as far as the world is concerned */
+	private int id;
 
 	/** Beliefs in one's own position. Kept in a 2D array (x,y) for ease of use */
-	private double[][] beliefs;
+	private Beliefs beliefs;
+	/** Preallocated grid that hypothetical and predicted beliefs get written into, then swapped with beliefs */
+	private Beliefs spare;
 
 	/** Possible actions, it is handy to have them in an iterable form */
 	private int[] sensorActions = new int[]{ExplorerWorld.NORTH, ExplorerWorld.SOUTH, ExplorerWorld.WEST, ExplorerWorld.EAST};
 	private int[] actions = sensorActions;
+	/** scratch space for the expected reward of each action, indexed by action */
+	private double[] actionValues = new double[4];
 	/** possible observations (move this list to world? */
 	private int[] observations = new int[]{ExplorerWorld.EMPTY, ExplorerWorld.FULL, ExplorerWorld.TARGET};
 
@@ -32,17 +38,16 @@ public class OptimalExplorer implements Explorer {
 
 	private boolean useFast = true;
 
+	/** if there is one, looks several cycles ahead instead of just the next one */
+	private LookaheadPlanner planner;
+
 	public OptimalExplorer(ExplorerWorld world) {
-		world.addExplorer(this);
+		id = world.addExplorer(this);
 		this.world = world; // have to promise not to cheat
-		beliefs = new double[world.getMap().length][world.getMap()[0].length];
 		opt = new Action[sensorActions.length][observations.length];
 		// right know we have no idea at all
-		for (int i = 0; i < beliefs.length; i++) {
-			for (int j = 0; j < beliefs[0].length; j++) {
-				beliefs[i][j] = 1.0/(beliefs.length * beliefs[0].length);
-			}
-		}
+		beliefs = world.makeBeliefs(true, id, 0);
+		spare = world.makeBeliefs(false, id, 1);
 	}
 
 	/** choose whether it is fast or slow, mainly to test that they behave the same */
@@ -51,13 +56,39 @@ public class OptimalExplorer implements Explorer {
 		useFast = fast;
 	}
 
+	/**
+	 * Plans up to depth cycles ahead with a LookaheadPlanner, taking about budgetMillis per decision.
+	 */
+	public OptimalExplorer(ExplorerWorld world, int depth, long budgetMillis) {
+		this(world);
+		planner = new LookaheadPlanner(world, depth, budgetMillis);
+		planner.setAgent(id);
+	}
+
+	/** Plans ahead with the given planner, which has to be for the same world (and only this explorer), eg. one with a node budget */
+	public OptimalExplorer(ExplorerWorld world, LookaheadPlanner planner) {
+		this(world);
+		this.planner = planner;
+		planner.setAgent(id);
+	}
+
 	@Override
 	public int getSensorAction() {
+		if (planner != null)
+			return getSensorActionLookahead();
 		if (useFast)
 			return getSensorActionQuicker();
 		return getSensorActionSlowly();
 	}
 
+	/** searches a few cycles ahead, as far as there's time for */
+	private int getSensorActionLookahead() {
+		int astar = planner.plan(beliefs);
+		world.getTrace().event(TraceSink.SENSOR_ACTION, this, astar, planner.getDepthReached()); // value is how deep it got
+		lastSensorAction = astar;
+		return astar;
+	}
+
 	/** precomputes a table then figures out the best way to look */
 	private int getSensorActionQuicker() {
 		precompBStar(); // now we should have a table
@@ -68,28 +99,21 @@ public class OptimalExplorer implements Explorer {
 			// and sum over the possible observations
 			double ysum = 0;
 			for(int y : observations) {
-				// ...and the possible states of the world
-				double xsum = 0;
-				for (int ax = 0; ax < beliefs.length; ax++) {
-					for (int ay = 0; ay < beliefs[0].length; ay++) {
-						xsum += world.observationProbability(y, a, ax, ay) * beliefs[ax][ay] * opt[a][y].value;
-					}
-				}
-				ysum += xsum;
+				// ...and the possible states of the world, which just gives the probability of seeing y
+				ysum += beliefs.observationProbability(world, a, y) * opt[a][y].value;
 			}
-			if (ysum > astarval) {
+			if (ActionValueEvaluator.beats(ysum, astarval)) {
 				astarval = ysum;
 				astar = a;
 			}
 		}
-		System.out.println("(OptimalExplorer) choosing sensor action: "+world.actionToString(astar) + " (value: " + astarval + ")");
+		world.getTrace().event(TraceSink.SENSOR_ACTION, this, astar, astarval);
 		lastSensorAction = astar;
 		return astar;
 	}
 
 	/** does the whole messy calculation. Impractical on anything bigger than 15 or so. Could be pruned somewhat, but still. */
 	private int getSensorActionSlowly() {
-		System.out.print("(OptimalExplorer) Choosing sensor action: ");
 		// this is a bit naive, could (should) only look at possible state transitions
 		int astar = -1;
 		double astarval = Double.NEGATIVE_INFINITY;
@@ -100,97 +124,66 @@ public class OptimalExplorer implements Explorer {
 			for (int y : observations) {
 				// sum over possible states
 				double xsum = 0;
-				for (int agentX = 0; agentX < beliefs.length; agentX++) {
-					for (int agentY = 0; agentY < beliefs[0].length; agentY++) {
+				for (int agentX = 0; agentX < beliefs.getWidth(); agentX++) {
+					for (int agentY = 0; agentY < beliefs.getHeight(); agentY++) {
 						// of the expected value of the best action
 						double b = getBestActionValue(a,y);
 						if (b != Double.NEGATIVE_INFINITY)
 							xsum += world.observationProbability(y, a, agentX, agentY) *
-									beliefs[agentX][agentY] *
+									beliefs.get(agentX, agentY) *
 									b;
 					}
 				}
 				ysum += xsum;
 			}
-			if (ysum > astarval) {
+			if (ActionValueEvaluator.beats(ysum, astarval)) {
 				astarval = ysum;
 				astar = a;
 			}
 		}
-		System.out.println(world.actionToString(astar) + " (value: " + astarval + ")");
+		world.getTrace().event(TraceSink.SENSOR_ACTION, this, astar, astarval);
 		lastSensorAction = astar;
 		return astar;
 	}
 
-	/** for now just does the naive calculation */
+	/** the value of the best action we could take after looking in direction a and seeing obs */
 	private double getBestActionValue(int a, int obs) {
 		// what would our beliefs be in these circumstances?
-		double[][] newBel = updateBeliefs(a, obs);
-		if (newBel[0][0] == Double.NEGATIVE_INFINITY)
+		Beliefs newBel = updateBeliefs(a, obs);
+		if (newBel.get(0, 0) == Double.NEGATIVE_INFINITY)
 			return Double.NEGATIVE_INFINITY;
 
-		int bstar = -1;
-		double bstarval = Double.NEGATIVE_INFINITY;
-		for (int b : actions) {
-			// now we need to look at each possible state transition
-			double newStateSum = 0;
-			// which means for every possible next state
-			for (int newX = 0; newX < beliefs.length; newX++) {
-				for (int newY = 0; newY < beliefs[0].length; newY++) {
-					int[] newState = new int[]{newX,newY};
-					// we need to look at every possible previous state
-					double stateSum = 0;
-					for (int x = 0; x < beliefs.length; x++) {
-						for (int y = 0; y < beliefs[0].length; y++) {
-							stateSum += newBel[x][y] * // belief in CURRENT state if we were to make the observation, times
-										world.transitionProbability(newX, newY, x, y, b) * // probability of getting into the new state
-										world.getReward(newState);
-						}
-					}
-					newStateSum += stateSum;
-				}
-			}
-			if (newStateSum > bstarval) {
-				bstar = b;
-				bstarval = newStateSum;
-			}
-		}
-		return bstarval;
+		int bstar = world.getActionValueEvaluator().bestAction(newBel, actions, actionValues);
+		return actionValues[bstar];
 	}
 
 	/** Returns the advanced beliefs given a sensor action and an observation. Does not overwrite existing beliefs
-	 * as we have to use this for figuring out the best options
+	 * as we have to use this for figuring out the best options. The result lives in the spare grid, so it is only
+	 * good until the next call (or until it gets swapped in).
 	 * @param a - the sensor action
 	 * @param obs - the observation
 	 * @return
 	 */
-	private double[][] updateBeliefs(int a, int obs) {
-		double[][] newBeliefs = new double[beliefs.length][beliefs[0].length];
-		double sum = 0; // for the normalisation
-		for (int x = 0; x < beliefs.length; x++) {
-			for (int y = 0; y < beliefs[0].length; y++) {
-				newBeliefs[x][y] = beliefs[x][y] * world.observationProbability(obs, a, x, y);
-				sum += newBeliefs[x][y];
-			}
-		}
-		if (sum == 0) { // this does happen a few times
-			newBeliefs[0][0] = Double.NEGATIVE_INFINITY;
+	Beliefs updateBeliefs(int a, int obs) { // package-private so the benchmarks can get at it
+		Beliefs newBeliefs = spare;
+		double sum = beliefs.correct(world, a, obs, newBeliefs); // for the normalisation
+		if (sum == 0 && !newBeliefs.resetsWhenEmpty()) { // this does happen a few times (some beliefs go back to uniform instead)
+			newBeliefs.set(0, 0, Double.NEGATIVE_INFINITY);
 			return newBeliefs;
 		}
-		// now normalise
-		for (int x = 0; x < beliefs.length; x++) {
-			for (int y = 0; y < beliefs[0].length; y++) {
-				newBeliefs[x][y] /= sum;
-			}
-		}
+		newBeliefs.normalise(sum);
 		return newBeliefs;
 	}
 
 	@Override
 	public int getAction() { // uses current beliefs -- ie. assumes they have been updated already
-		int bstar = (useFast)? getActionFaster() : getActionSlowly();
+		int bstar;
+		if (planner != null)
+			bstar = planner.getAction(lastObservation);
+		else
+			bstar = (useFast)? getActionFaster() : getActionSlowly();
 		advanceBeliefs(bstar);
-		System.out.println("(OptimalExplorer) Choosing action: " + world.actionToString(bstar));
+		world.getTrace().event(TraceSink.ACTION, this, bstar, Double.NaN);
 		lastAction = bstar;
 		return bstar;
 	}
@@ -199,94 +192,35 @@ public class OptimalExplorer implements Explorer {
 		return opt[lastSensorAction][lastObservation].action;
 	}
 
-	/** the naive way */
+	/** the slow way, without the table */
 	private int getActionSlowly() {
-		int bstar = -1;
-		double bstarval = Double.NEGATIVE_INFINITY;
-		for (int b : actions) {
-			// now we need to look at each possible state transition
-			double newStateSum = 0;
-			// which means for every possible next state
-			for (int newX = 0; newX < beliefs.length; newX++) {
-				for (int newY = 0; newY < beliefs[0].length; newY++) {
-					int[] newState = new int[]{newX,newY};
-					// we need to look at every possible previous state
-					double stateSum = 0;
-					for (int x = 0; x < beliefs.length; x++) {
-						for (int y = 0; y < beliefs[0].length; y++) {
-							stateSum += beliefs[x][y] * // belief in CURRENT state if we were to make the observation, times
-										world.transitionProbability(newX, newY, x, y, b) * // probability of getting into the new state
-										world.getReward(newState);
-						}
-					}
-					newStateSum += stateSum;
-				}
-			}
-			if (newStateSum > bstarval) {
-				bstar = b;
-				bstarval = newStateSum;
-			}
-		}
-
-
-		return bstar;
+		return world.getActionValueEvaluator().bestAction(beliefs, actions, actionValues);
 	}
 
 	/** Advances beliefs according to the specified action (overwrites previous beliefs) */
-	private void advanceBeliefs(int b) {
-		double sum = 0;
-		double[][] newbel = new double[beliefs.length][beliefs[0].length];
-		for (int x  =0; x < beliefs.length; x++) {
-			for (int y = 0; y < beliefs[0].length; y++) {
-				double statesum = 0; // belief in each state is the sum of beliefs in possible previous state times the probability of the transition
-				for (int px = 0; px < beliefs.length; px++) {
-					for (int py = 0; py < beliefs[0].length; py++) {
-						statesum += beliefs[px][py] * world.transitionProbability(x, y, px, py, b);
-					}
-				}
-				newbel[x][y] = statesum;
-				sum += newbel[x][y];
-			}
-		}
-		// now normalise them
-		for (int x = 0; x < beliefs.length; x++) {
-			for (int y = 0; y < beliefs[0].length; y++) {
-				newbel[x][y] /= sum;
-			}
-		}
+	void advanceBeliefs(int b) { // package-private so the benchmarks can get at it
+		Beliefs newbel = spare;
+		beliefs.predict(world, b, newbel); // each state only has one successor, so this just shifts the mass along
+		newbel.normalise();
+		spare = beliefs;
 		beliefs = newbel;
 	}
 
-	/** Precomputes a table of actions and observations given a set of beliefs */
-	private Action[][] precompBStar() {
-
+	/**
+	 * Precomputes a table of actions and observations given a set of beliefs. The expected reward of each successor
+	 * only depends on the world, so that part comes from the world's shared reward fields and all that is left per entry
+	 * is a belief update and a dot product with each field.
+	 */
+	Action[][] precompBStar() { // package-private so the benchmarks can get at it
+		ActionValueEvaluator evaluator = world.getActionValueEvaluator();
 		for (int a : sensorActions) {
 			for (int y : observations) {
-				double[][] bel = updateBeliefs(a,y);
-				int bstar = -1;
-				double bstarval = Double.NEGATIVE_INFINITY;
-				for (int b : actions) {
-					double sumx = 0;
-					for (int ax = 0; ax < beliefs.length; ax++) {
-						for (int ay = 0; ay < beliefs[0].length; ay++) {
-							double sumxp = 0;
-							for (int axp = 0; axp < beliefs.length; axp++) {
-								for (int ayp = 0; ayp < beliefs[0].length; ayp++) {
-									sumxp += world.transitionProbability(axp, ayp, ax, ay, b) * world.getReward(new int[]{axp,ayp});
-								}
-							}
-							sumx += bel[ax][ay]*sumxp;
-						}
-					}
-					if (sumx > bstarval) {
-						bstarval = sumx;
-						bstar = b;
-					}
-				}
+				Beliefs bel = updateBeliefs(a,y);
+				int bstar = evaluator.bestAction(bel, actions, actionValues);
 				if (opt[a][y] == null)
 					opt[a][y] = new Action();
 				opt[a][y].action = bstar;
-				opt[a][y].value = bstarval;
+				opt[a][y].value = actionValues[bstar];
 			}
 		}
 
@@ -295,24 +229,31 @@ public class OptimalExplorer implements Explorer {
 
 	@Override
 	public void observe(int y) {
-		System.out.println("(OptimalExplorer) Observing: " + y);
-		beliefs = updateBeliefs(lastSensorAction, y);
+		world.getTrace().event(TraceSink.OBSERVATION, this, y, Double.NaN);
+		Beliefs posterior = updateBeliefs(lastSensorAction, y);
+		spare = beliefs; // swap rather than allocate
+		beliefs = posterior;
 		lastObservation = y;
 	}
 
+	@Override
+	public int getId() {
+		return id;
+	}
+
 	@Override
 	public int getLastSensorAction() {
 		return lastSensorAction;
 	}
 
 	/** For seeing what this fellow is thinking */
-	public double[][] getBeliefs() {
+	public Beliefs getBeliefs() {
 		return beliefs;
 	}
 
 	@Override
 	public String toString() {
-		return "OptimalExplorer";
+		return (planner != null)? "LookaheadExplorer" : "OptimalExplorer";
 	}
 
 	@Override
@@ -0,0 +1,346 @@
+package explorer;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Beliefs as a bounded set of weighted samples (particles) of where we might be, rather than a number for every
+ * cell, so the memory and the cost of an update only depend on the number of particles. For maps too big for a grid.
+ *
+ * Particles live in primitive arrays, in no particular order, and several can be in the same cell: each is its own
+ * weight, so after resampling a cell with ten copies has ten particles worth 1/N each rather than one worth 10/N,
+ * and the effective sample size is back to N. The support is a separate view, sorted by cell with the weights of
+ * each cell's particles added up, so that entropies etc. work the same as for a grid. It gets rebuilt when it is
+ * next asked for after the particles change.
+ *
+ * When normalising after a correction, if the weights have got too uneven (effective sample size under half the
+ * particles) they get resampled with systematic resampling, and a few particles get put down at random cells so
+ * that we can recover if we've lost track of where we really are. Normalising after a prediction never resamples
+ * (moving doesn't change the weights), so that happens at most once a cycle. If there's room for a particle in
+ * every cell none of that happens and it is exact, just like a sparse grid: particles that end up in the same cell
+ * get merged, as there's nothing to sample.
+ * @author mathewpaul1
+ *
+ */
+public class ParticleBeliefs implements Beliefs {
+
+	/** resample when the effective sample size drops below this fraction of the particles */
+	private static final double RESAMPLE_THRESHOLD = 0.5;
+
+	private final int width, height;
+	/** how many particles we can have */
+	private final int capacity;
+	/** the particles: which cell (any order, with repeats -- unless exact, when they are sorted with no repeats) and how much weight */
+	private final int[] cells;
+	private final double[] weights;
+	private int count;
+	/** the support: each cell with particles in, sorted, with their total weight. Out of date if stale */
+	private final int[] supportCells;
+	private final double[] supportWeights;
+	private int supportCount;
+	private boolean stale;
+	/** true if the last thing to change the weights was a correction, so normalising might resample */
+	private boolean corrected;
+	/** scratch for sorting and resampling */
+	private final long[] order;
+	private final int[] scratchCells;
+	private final double[] scratchWeights;
+
+	/** fraction of the particles put down at random when resampling */
+	private double injection = 0.01;
+	private final SplittableRandom rand;
+
+	/** An empty set of beliefs that can hold up to capacity particles. seed is for the resampling */
+	public ParticleBeliefs(int width, int height, int capacity, long seed) {
+		this.width = width;
+		this.height = height;
+		this.capacity = capacity;
+		cells = new int[capacity];
+		weights = new double[capacity];
+		supportCells = new int[capacity];
+		supportWeights = new double[capacity];
+		order = new long[capacity];
+		scratchCells = new int[capacity];
+		scratchWeights = new double[capacity];
+		rand = new SplittableRandom(seed);
+	}
+
+	/** Beliefs spread evenly over the whole map: a particle in every cell if they fit, otherwise at random cells */
+	public static ParticleBeliefs uniform(int width, int height, int capacity, long seed) {
+		ParticleBeliefs beliefs = new ParticleBeliefs(width, height, capacity, seed);
+		beliefs.spread();
+		return beliefs;
+	}
+
+	/** sets how many of the particles get put down at random each time we resample */
+	public void setInjection(double injection) {
+		this.injection = injection;
+	}
+
+	/** how many particles there are right now */
+	public int getCount() {
+		return count;
+	}
+
+	/** true if there's room for a particle in every cell, so we never need to resample */
+	private boolean exact() {
+		return capacity >= width*height;
+	}
+
+	/** replaces the particles with uniform beliefs */
+	private void spread() {
+		int n = width*height;
+		if (exact()) {
+			for (int i = 0; i < n; i++) {
+				cells[i] = i;
+				weights[i] = 1.0/n;
+			}
+			count = n;
+		} else {
+			for (int k = 0; k < capacity; k++) {
+				cells[k] = rand.nextInt(n);
+				weights[k] = 1.0/capacity;
+			}
+			count = capacity;
+		}
+		stale = true;
+		corrected = false;
+	}
+
+	/**
+	 * Sorts the particles by cell and adds up the weight in each cell, into cellsOut and weightsOut.
+	 * @return how many cells there are
+	 */
+	private int aggregate(int[] cellsOut, double[] weightsOut) {
+		for (int k = 0; k < count; k++)
+			order[k] = ((long) cells[k] << 32) | k;
+		Arrays.sort(order, 0, count);
+		int n = 0;
+		for (int k = 0; k < count; k++) {
+			int cell = (int) (order[k] >>> 32);
+			double weight = weights[(int) order[k]];
+			if (n > 0 && cellsOut[n-1] == cell) {
+				weightsOut[n-1] += weight;
+			} else {
+				cellsOut[n] = cell;
+				weightsOut[n] = weight;
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/** merges particles in the same cell, for exact beliefs */
+	private void merge() {
+		count = aggregate(scratchCells, scratchWeights);
+		System.arraycopy(scratchCells, 0, cells, 0, count);
+		System.arraycopy(scratchWeights, 0, weights, 0, count);
+	}
+
+	/** brings the support up to date with the particles */
+	private void updateSupport() {
+		if (!stale)
+			return;
+		if (exact()) { // already one per cell, in order
+			System.arraycopy(cells, 0, supportCells, 0, count);
+			System.arraycopy(weights, 0, supportWeights, 0, count);
+			supportCount = count;
+		} else {
+			supportCount = aggregate(supportCells, supportWeights);
+		}
+		stale = false;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public double get(int x, int y) {
+		return get(x*height + y);
+	}
+
+	@Override
+	public double get(int i) {
+		updateSupport();
+		int k = Arrays.binarySearch(supportCells, 0, supportCount, i);
+		return (k >= 0)? supportWeights[k] : 0;
+	}
+
+	/**
+	 * Sets the weight in a cell: the first particle there gets all of it and any others get none. Adds a particle
+	 * if there isn't one there (if there's room).
+	 */
+	@Override
+	public void set(int x, int y, double belief) {
+		int i = x*height + y;
+		stale = true;
+		if (exact()) { // keep them in order
+			int k = Arrays.binarySearch(cells, 0, count, i);
+			if (k >= 0) {
+				weights[k] = belief;
+				return;
+			}
+			k = -k - 1;
+			System.arraycopy(cells, k, cells, k+1, count - k);
+			System.arraycopy(weights, k, weights, k+1, count - k);
+			cells[k] = i;
+			weights[k] = belief;
+			count++;
+			return;
+		}
+		boolean found = false;
+		for (int k = 0; k < count; k++) {
+			if (cells[k] == i) {
+				weights[k] = found? 0 : belief;
+				found = true;
+			}
+		}
+		if (found)
+			return;
+		if (count == capacity)
+			throw new IllegalStateException("no room for another particle");
+		cells[count] = i;
+		weights[count] = belief;
+		count++;
+	}
+
+	@Override
+	public int supportSize() {
+		updateSupport();
+		return supportCount;
+	}
+
+	@Override
+	public int supportCell(int k) {
+		updateSupport();
+		return supportCells[k];
+	}
+
+	@Override
+	public double supportWeight(int k) {
+		updateSupport();
+		return supportWeights[k];
+	}
+
+	@Override
+	public boolean isDense() {
+		return false;
+	}
+
+	/** Moves every particle to its successor under b (merging any that land together if exact) */
+	@Override
+	public void predict(ExplorerWorld world, int b, Beliefs into) {
+		ParticleBeliefs out = (ParticleBeliefs) into;
+		for (int k = 0; k < count; k++) { // straight from the map, so big worlds never need the per-cell tables
+			out.cells[k] = world.successor(b, cells[k]);
+			out.weights[k] = weights[k];
+		}
+		out.count = count;
+		if (exact())
+			out.merge();
+		out.stale = true;
+		out.corrected = false;
+	}
+
+	/** Weights every particle by the likelihood of obs, which is just p or q depending on what it would see */
+	@Override
+	public double correct(ExplorerWorld world, int a, int obs, Beliefs into) {
+		ParticleBeliefs out = (ParticleBeliefs) into;
+		double p = world.observationProbability, q = (1-p)/2.0;
+		double sum = 0;
+		for (int k = 0; k < count; k++) {
+			double w = weights[k] * ((world.sensed(a, cells[k]) == obs)? p : q);
+			out.cells[k] = cells[k];
+			out.weights[k] = w;
+			sum += w;
+		}
+		out.count = count;
+		out.stale = true;
+		out.corrected = true;
+		return sum;
+	}
+
+	@Override
+	public double observationProbability(ExplorerWorld world, int a, int obs) {
+		double p = world.observationProbability, q = (1-p)/2.0;
+		double sum = 0;
+		for (int k = 0; k < count; k++)
+			sum += weights[k] * ((world.sensed(a, cells[k]) == obs)? p : q);
+		return sum;
+	}
+
+	@Override
+	public double sum() {
+		double sum = 0;
+		for (int k = 0; k < count; k++)
+			sum += weights[k];
+		return sum;
+	}
+
+	/**
+	 * Normalises, then if this is straight after a correction, resamples if the weights have got too uneven. If
+	 * everything has gone to 0 we start again.
+	 */
+	@Override
+	public void normalise(double sum) {
+		if (sum == 0 || count == 0) {
+			spread();
+			return;
+		}
+		double squares = 0;
+		for (int k = 0; k < count; k++) {
+			weights[k] /= sum;
+			squares += weights[k]*weights[k];
+		}
+		stale = true;
+		boolean afterCorrection = corrected;
+		corrected = false;
+		if (afterCorrection && !exact() && 1.0/squares < RESAMPLE_THRESHOLD*count)
+			resample();
+	}
+
+	@Override
+	public void normalise() {
+		normalise(sum());
+	}
+
+	@Override
+	public boolean resetsWhenEmpty() {
+		return true;
+	}
+
+	/**
+	 * Systematic resampling: capacity evenly spaced draws (with one random offset) through the cumulative weights,
+	 * less the ones that get put down at random instead. Every draw is a new particle of weight 1/capacity, so a
+	 * particle that gets several draws turns into several particles.
+	 */
+	private void resample() {
+		int injected = (int) (injection*capacity);
+		int draws = capacity - injected;
+		double step = 1.0/draws, u = rand.nextDouble()*step, cumulative = 0;
+		int n = 0;
+		for (int k = 0; k < count && n < draws; k++) {
+			cumulative += weights[k];
+			while (n < draws && u < cumulative) {
+				scratchCells[n++] = cells[k];
+				u += step;
+			}
+		}
+		while (n < draws) // rounding left the last few draws off the end, so they go to the last particle
+			scratchCells[n++] = cells[count-1];
+		int size = width*height;
+		for (int k = 0; k < injected; k++)
+			scratchCells[n++] = rand.nextInt(size);
+		System.arraycopy(scratchCells, 0, cells, 0, n);
+		Arrays.fill(weights, 0, n, 1.0/capacity);
+		count = n;
+		stale = true;
+	}
+}
@@ -0,0 +1,113 @@
+package explorer;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Smooth blobs of full and empty rather than speckles: Perlin's gradient noise, summed over a few octaves, with the
+ * squares where it is lowest filled in. The cut off is picked so that (ties aside) exactly a fraction density of
+ * the map ends up full, so densities mean the same as for the noise maps.
+ * @author mathewpaul1
+ *
+ */
+public class PerlinMapGenerator implements MapGenerator {
+
+	/** size of the biggest blobs, in squares */
+	private double scale = 8;
+	/** how many octaves of noise, each half the size and half the strength of the one before */
+	private int octaves = 3;
+
+	@Override
+	public String getName() {
+		return "perlin";
+	}
+
+	public void setScale(double scale) {
+		this.scale = scale;
+	}
+
+	public void setOctaves(int octaves) {
+		this.octaves = octaves;
+	}
+
+	@Override
+	public WorldMap generate(int w, int h, double density, SplittableRandom rand) {
+		// the usual doubled permutation table, so lookups don't have to wrap
+		int[] perm = new int[512];
+		for (int i = 0; i < 256; i++)
+			perm[i] = i;
+		for (int i = 255; i > 0; i--) {
+			int j = rand.nextInt(i+1);
+			int t = perm[i];
+			perm[i] = perm[j];
+			perm[j] = t;
+		}
+		System.arraycopy(perm, 0, perm, 256, 256);
+
+		float[] noise = new float[w*h];
+		for (int x = 0; x < w; x++) {
+			for (int y = 0; y < h; y++) {
+				double value = 0, frequency = 1/scale, amplitude = 1;
+				for (int o = 0; o < octaves; o++) {
+					value += amplitude * noise(perm, x*frequency, y*frequency);
+					frequency *= 2;
+					amplitude /= 2;
+				}
+				noise[x*h + y] = (float) value;
+			}
+		}
+
+		WorldMap map = new WorldMap(w, h);
+		int full = (int) Math.round(density * noise.length);
+		if (full > 0) {
+			float[] sorted = noise.clone();
+			Arrays.sort(sorted);
+			float cutoff = sorted[full-1];
+			for (int i = 0; i < noise.length; i++) {
+				if (noise[i] <= cutoff)
+					map.set(i, ExplorerWorld.FULL);
+			}
+		}
+
+		// finally the target
+		map.setTarget(w/2, h/2);
+		return map;
+	}
+
+	/** 2d Perlin noise at (x,y), roughly in [-1,1] */
+	private static double noise(int[] perm, double x, double y) {
+		int xi = (int) Math.floor(x), yi = (int) Math.floor(y);
+		double xf = x - xi, yf = y - yi;
+		xi &= 255;
+		yi &= 255;
+		double u = fade(xf), v = fade(yf);
+		int aa = perm[perm[xi] + yi], ab = perm[perm[xi] + yi + 1];
+		int ba = perm[perm[xi + 1] + yi], bb = perm[perm[xi + 1] + yi + 1];
+		double bottom = lerp(u, grad(aa, xf, yf), grad(ba, xf - 1, yf));
+		double top = lerp(u, grad(ab, xf, yf - 1), grad(bb, xf - 1, yf - 1));
+		return lerp(v, bottom, top);
+	}
+
+	/** 6t^5 - 15t^4 + 10t^3, so the joins between lattice squares are smooth */
+	private static double fade(double t) {
+		return t*t*t*(t*(t*6 - 15) + 10);
+	}
+
+	private static double lerp(double t, double a, double b) {
+		return a + t*(b - a);
+	}
+
+	/** dot product of (x,y) with one of eight gradient directions, picked by the hash */
+	private static double grad(int hash, double x, double y) {
+		switch (hash & 7) {
+		case 0: return x + y;
+		case 1: return x - y;
+		case 2: return -x + y;
+		case 3: return -x - y;
+		case 4: return x;
+		case 5: return -x;
+		case 6: return y;
+		default: return -y;
+		}
+	}
+}
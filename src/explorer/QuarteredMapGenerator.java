@@ -0,0 +1,48 @@
+package explorer;
+
+import java.util.SplittableRandom;
+
+/** Makes a map with four distinct patterns, one per quarter. Doesn't need density or any randomness */
+public class QuarteredMapGenerator implements MapGenerator {
+
+	@Override
+	public String getName() {
+		return "quartered";
+	}
+
+	@Override
+	public WorldMap generate(int w, int h, double density, SplittableRandom rand) {
+		WorldMap map = new WorldMap(w, h);
+
+		// top left gets vertical bands
+		for (int x = 0; x <= w/2; x++)
+			for (int y = 0; y < h/2; y++) {
+				if (x % 2 == 0)
+					map.set(x, y, ExplorerWorld.FULL);
+			}
+
+		// top right gets horizontal
+		for (int x = w/2+1; x < w; x++)
+			for (int y = 0; y < h/2; y++) {
+				if (y % 2 == 0)
+					map.set(x, y, ExplorerWorld.FULL);
+			}
+		// bottom left gets a checkerboard
+		for (int x = 0; x <= w/2; x++)
+			for (int y = h/2; y < h; y++) {
+				if ((y+x)%2 == 0)
+					map.set(x, y, ExplorerWorld.FULL);
+			}
+
+		// bottom right gets something else
+		for (int x = w/2+1; x < w; x++)
+			for (int y = h/2; y < h; y++) {
+				if ((y/x)%2 == 0)
+					map.set(x, y, ExplorerWorld.FULL);
+			}
+
+		// finally the target
+		map.setTarget(w/2, h/2);
+		return map;
+	}
+}
@@ -0,0 +1,101 @@
+package explorer;
+
+import java.util.Arrays;
+
+/**
+ * Path length statistics for one type of explorer over a batch of trials, kept up as the trials come in: the
+ * mean and variance with Welford's method (so no catastrophic cancellation however many there are), and a count
+ * of each path length for the quantiles. Path lengths are small whole numbers (they can't be more than the step
+ * limit) so the counts are exact and tiny, which is as good a sketch as we could want.
+ */
+public class Result {
+	public int numTrials;
+	public double averagePathLength;
+	public int highestPathLength;
+	public int lowestPathLength;
+	/** trials that hit the step limit without getting to the target. They don't count towards anything else */
+	public int failures;
+
+	private String name;
+	/** sum of squared differences from the mean, for the variance */
+	private double m2;
+	/** how many trials had each path length */
+	private int[] counts = new int[128];
+
+	public Result(String n) {
+		numTrials = 0;
+		averagePathLength = Double.NaN;
+		highestPathLength = Integer.MIN_VALUE;
+		lowestPathLength = Integer.MAX_VALUE;
+
+		name = n;
+	}
+
+	/** Adds the path length from one trial */
+	public void add(int num) {
+		numTrials += 1;
+		if (Double.isNaN(averagePathLength))
+			averagePathLength = 0;
+		double delta = num - averagePathLength;
+		averagePathLength += delta/numTrials;
+		m2 += delta*(num - averagePathLength);
+		if (num > highestPathLength)
+			highestPathLength = num;
+		if (num < lowestPathLength)
+			lowestPathLength = num;
+		if (num >= counts.length)
+			counts = Arrays.copyOf(counts, Math.max(2*counts.length, num+1));
+		counts[num]++;
+	}
+
+	/** Counts a trial where the explorer never made it */
+	public void addFailure() {
+		failures++;
+	}
+
+	/** the (sample) variance of the path lengths, NaN with fewer than two trials */
+	public double getVariance() {
+		return (numTrials > 1)? m2/(numTrials-1) : Double.NaN;
+	}
+
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	/** the standard error of averagePathLength */
+	public double getStandardError() {
+		return Math.sqrt(getVariance()/numTrials);
+	}
+
+	/** The path length that a fraction q of the trials were no longer than (nearest rank). NaN if there aren't any */
+	public double getQuantile(double q) {
+		if (numTrials == 0)
+			return Double.NaN;
+		long rank = Math.max(1, (long) Math.ceil(q*numTrials));
+		long seen = 0;
+		for (int length = 0; length < counts.length; length++) {
+			seen += counts[length];
+			if (seen >= rank)
+				return length;
+		}
+		return highestPathLength;
+	}
+
+	public double getMedian() {
+		return getQuantile(0.5);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		return    "~~~"+name+"~~~\n"
+				+ "\t" + numTrials + " trials (" + failures + " failed)\n"
+				+ "\t" + averagePathLength + " average path length (sd " + getStandardDeviation() + ")\n"
+				+ "\t" + getMedian() + " median, " + getQuantile(0.9) + " 90th percentile\n"
+				+ "\t" + highestPathLength + " longest path\n"
+				+ "\t" + lowestPathLength + " shortest path\n";
+	}
+}
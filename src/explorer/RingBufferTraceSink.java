@@ -0,0 +1,95 @@
+package explorer;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the most recent events in fixed size primitive arrays, overwriting the oldest. Recording an event is a
+ * few array stores, with no allocation and no locking, so it is cheap enough to leave on during batch runs and
+ * look at afterwards (or when something goes wrong). Safe to share between threads: every event gets its own
+ * slot, although an event being overwritten while it is being dumped might come out mixed up.
+ *
+ * The explorer is kept as its id in its world and the trial as its number (-1 if the event didn't come through
+ * forTrial), rather than the explorer itself, so that the buffer doesn't hang on to explorers (and their beliefs
+ * and worlds) long after their trials are over.
+ * @author mathewpaul1
+ *
+ */
+public class RingBufferTraceSink extends TraceSink {
+
+	private final int capacity;
+	private final int[] kinds;
+	private final int[] values;
+	private final double[] scores;
+	private final int[] trials;
+	/** the id of the explorer responsible, -1 for none */
+	private final int[] explorers;
+	/** how many events have ever been recorded */
+	private final AtomicLong count = new AtomicLong();
+
+	public RingBufferTraceSink(int level, int capacity) {
+		super(level);
+		this.capacity = capacity;
+		kinds = new int[capacity];
+		values = new int[capacity];
+		scores = new double[capacity];
+		trials = new int[capacity];
+		explorers = new int[capacity];
+	}
+
+	@Override
+	protected void record(int trial, int kind, Explorer source, int value, double score) {
+		int slot = (int) (count.getAndIncrement() % capacity);
+		kinds[slot] = kind;
+		values[slot] = value;
+		scores[slot] = score;
+		trials[slot] = trial;
+		explorers[slot] = (source == null)? -1 : source.getId();
+	}
+
+	/** how many events are in the buffer */
+	public int size() {
+		return (int) Math.min(count.get(), capacity);
+	}
+
+	/** how many got recorded in total, including the ones that have since been overwritten */
+	public long getTotalEvents() {
+		return count.get();
+	}
+
+	/** the index in the arrays of the i'th oldest event still in the buffer */
+	private int slot(int i) {
+		long total = count.get();
+		long first = Math.max(0, total - capacity);
+		return (int) ((first + i) % capacity);
+	}
+
+	/** Prints what's in the buffer, oldest first */
+	public void dump(PrintStream out) {
+		int n = size();
+		for (int i = 0; i < n; i++) {
+			int s = slot(i);
+			String line = ConsoleTraceSink.format(kinds[s], "explorer " + explorers[s], values[s], scores[s]);
+			out.println((trials[s] < 0)? line : "[trial " + trials[s] + "] " + line);
+		}
+	}
+
+	/**
+	 * Writes what's in the buffer in binary, oldest first: the number of events, then for each one the kind (a
+	 * byte), the trial, the explorer's id, the value and the score.
+	 */
+	public void writeTo(DataOutputStream out) throws IOException {
+		int n = size();
+		out.writeInt(n);
+		for (int i = 0; i < n; i++) {
+			int s = slot(i);
+			out.writeByte(kinds[s]);
+			out.writeInt(trials[s]);
+			out.writeInt(explorers[s]);
+			out.writeInt(values[s]);
+			out.writeDouble(scores[s]);
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package explorer;
+
+/**
+ * Running sums over a set of beliefs that are enough to say how any observation would change them, without
+ * ever building the posterior.
+ *
+ * Looking in direction a from a cell shows one true square, so the likelihood of an observation y only takes two
+ * values: p (observationProbability) in cells where the square really is y, and q = (1-p)/2 everywhere else.
+ * So if we split the cells up by what each sensor action would really see and keep the total belief and the total
+ * b*ln(b) in each group, the normaliser, entropy etc. of every possible posterior come out in closed form. One pass
+ * over the beliefs does all four sensor actions at once.
+ * @author mathewpaul1
+ *
+ */
+public class SensorStatistics {
+
+	/** mass[a][c]: total belief in the cells where looking in direction a shows a square of type c */
+	private final double[][] mass = new double[4][3];
+	/** plogp[a][c]: sum of b*ln(b) over those same cells */
+	private final double[][] plogp = new double[4][3];
+	/** the same over every cell */
+	private double totalMass, totalPlogp;
+	/** the observation probability the sums are used with (taken from the world at the time) */
+	private double p, q;
+
+	/**
+	 * Does the pass over the beliefs. Has to be called again whenever the beliefs change.
+	 * @param world - for what each sensor action sees
+	 * @param beliefs - the (prior) beliefs
+	 */
+	public void accumulate(ExplorerWorld world, Beliefs beliefs) {
+		accumulate(world, beliefs, true);
+	}
+
+	/** Just the belief mass, no b*ln(b). Enough for observation probabilities and surprise, and saves a log per cell */
+	public void accumulateMass(ExplorerWorld world, Beliefs beliefs) {
+		accumulate(world, beliefs, false);
+	}
+
+	private void accumulate(ExplorerWorld world, Beliefs beliefs, boolean withEntropy) {
+		for (int a = 0; a < mass.length; a++) {
+			for (int c = 0; c < mass[a].length; c++) {
+				mass[a][c] = 0;
+				plogp[a][c] = 0;
+			}
+		}
+		totalMass = 0;
+		totalPlogp = 0;
+		p = world.observationProbability;
+		q = (1-p)/2.0;
+
+		// grids (as big as the tables anyway) read what each sensor sees from the world's tables, anything else
+		// works it out from the map as it goes
+		boolean tables = beliefs instanceof BeliefGrid;
+		byte[] north = tables? world.getSensed(ExplorerWorld.NORTH) : null, south = tables? world.getSensed(ExplorerWorld.SOUTH) : null,
+			   east = tables? world.getSensed(ExplorerWorld.EAST) : null, west = tables? world.getSensed(ExplorerWorld.WEST) : null;
+		double[] mn = mass[ExplorerWorld.NORTH], ms = mass[ExplorerWorld.SOUTH], me = mass[ExplorerWorld.EAST], mw = mass[ExplorerWorld.WEST];
+		double[] tn = plogp[ExplorerWorld.NORTH], ts = plogp[ExplorerWorld.SOUTH], te = plogp[ExplorerWorld.EAST], tw = plogp[ExplorerWorld.WEST];
+		// a dense grid gets read straight from its array, anything else through its support
+		double[] dense = (beliefs instanceof BeliefGrid && beliefs.isDense())? ((BeliefGrid) beliefs).cells() : null;
+		int support = (dense != null)? dense.length : beliefs.supportSize();
+		for (int k = 0; k < support; k++) {
+			int i = (dense != null)? k : beliefs.supportCell(k);
+			double b = (dense != null)? dense[k] : beliefs.supportWeight(k);
+			if (b > 0) { // zero cells don't contribute to anything (and we can't take the log)
+				double blogb = withEntropy? b * Math.log(b) : 0;
+				int n = tables? north[i] : world.sensed(ExplorerWorld.NORTH, i), s = tables? south[i] : world.sensed(ExplorerWorld.SOUTH, i),
+					e = tables? east[i] : world.sensed(ExplorerWorld.EAST, i), w = tables? west[i] : world.sensed(ExplorerWorld.WEST, i);
+				mn[n] += b;
+				tn[n] += blogb;
+				ms[s] += b;
+				ts[s] += blogb;
+				me[e] += b;
+				te[e] += blogb;
+				mw[w] += b;
+				tw[w] += blogb;
+				totalMass += b;
+				totalPlogp += blogb;
+			}
+		}
+	}
+
+	/** The probability of seeing y after looking in direction a, ie. the normaliser of the posterior */
+	public double observationProbability(int a, int y) {
+		return p*mass[a][y] + q*(totalMass - mass[a][y]);
+	}
+
+	/**
+	 * The entropy (in nats) of the beliefs we would have after looking in direction a and seeing y.
+	 * With posterior b*L/Z it is ln(Z) - (sum b*L*ln(b) + sum b*L*ln(L))/Z, and both sums split into the two likelihood groups.
+	 * NaN if y is impossible.
+	 */
+	public double posteriorEntropy(int a, int y) {
+		double z = observationProbability(a, y);
+		if (z <= 0)
+			return Double.NaN;
+		double sumLlogb = p*plogp[a][y] + q*(totalPlogp - plogp[a][y]);
+		return Math.log(z) - (sumLlogb + sumLlogL(a, y))/z;
+	}
+
+	/**
+	 * Bayesian surprise: the KL divergence (in nats) from the beliefs to the posterior after looking in direction a and seeing y.
+	 * The ratio of posterior to prior is just L/Z, so it is (sum b*L*ln(L))/Z - ln(Z). NaN if y is impossible.
+	 */
+	public double surprise(int a, int y) {
+		double z = observationProbability(a, y);
+		if (z <= 0)
+			return Double.NaN;
+		return sumLlogL(a, y)/z - Math.log(z);
+	}
+
+	/**
+	 * The expected surprise of looking in direction a, averaged over what we might see. Weighting by P(y) = Z cancels
+	 * the division, so each observation is just sum b*L*ln(L) - Z ln(Z). Impossible observations add nothing.
+	 */
+	public double expectedSurprise(int a) {
+		double sum = 0;
+		for (int y = 0; y < mass[a].length; y++)
+			sum += sumLlogL(a, y) - xlogx(observationProbability(a, y));
+		return sum;
+	}
+
+	/** sum over cells of b*L*ln(L) for observation y after looking in direction a */
+	private double sumLlogL(int a, int y) {
+		return xlogx(p)*mass[a][y] + xlogx(q)*(totalMass - mass[a][y]);
+	}
+
+	/** The entropy (in nats) of the beliefs themselves */
+	public double entropy() {
+		return Math.log(totalMass) - totalPlogp/totalMass;
+	}
+
+	/** x ln x, taking 0 ln 0 as 0 */
+	private static double xlogx(double x) {
+		return (x > 0)? x*Math.log(x) : 0;
+	}
+}
@@ -0,0 +1,148 @@
+package explorer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * A single trial: one world and the explorers in it, stepped through the sense, observe, act cycle until they
+ * all reach the target. Doesn't know anything about drawing, so it can be run headless or watched by the gui.
+ *
+ * Every explorer's beliefs are its own, so within a phase the explorers don't care about each other. Given a pool
+ * (setPool) each phase's per-explorer work gets split over it, and the phase doesn't finish until all of it has,
+ * so nobody starts observing before everybody has chosen where to look and so on. Each explorer has its own
+ * observation noise in the world, so a run comes out the same whether it is stepped in parallel or not, and
+ * however many explorers there are. Anything that isn't per-explorer (traces of who finished, the finished list)
+ * is done after the barrier, in explorer order.
+ * @author mathewpaul1
+ *
+ */
+public class Simulation {
+
+	/** The phases of a cycle, in order */
+	public static final int SENSE = 0;
+	public static final int OBSERVE = 1;
+	public static final int ACT = 2;
+
+	private ExplorerWorld world;
+	/** explorers that are still going */
+	private List<Explorer> explorers;
+	/** explorers that have made it, and how long it took them */
+	private Map<Explorer, Integer> finished;
+	private Map<Explorer, List<int[]>> paths;
+	private int step = 0; // how far through are we?
+	private int pathLength = 0;
+	/** where the phases get run, or null to just go through the explorers one at a time */
+	private ForkJoinPool pool;
+	/** scratch for the act phase: which of the explorers made it this time */
+	private boolean[] reached;
+
+	public Simulation(ExplorerWorld world, List<Explorer> explorers) {
+		this.world = world;
+		this.explorers = new ArrayList<>(explorers);
+
+		finished = new HashMap<>();
+		paths = new HashMap<>();
+		for (Explorer e : explorers) {
+			paths.put(e, new ArrayList<int[]>());
+		}
+		for (Explorer e : explorers) {
+			paths.get(e).add(world.getState(e.getId()));
+		}
+		reached = new boolean[explorers.size()];
+	}
+
+	/** Runs each phase's explorers in parallel on the given pool, or one after the other if it is null (the default) */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/** Calls work with the index of every explorer still going, and returns once they've all been done */
+	private void forEachExplorer(IntConsumer work) {
+		int n = explorers.size();
+		if (pool == null || n < 2) {
+			for (int i = 0; i < n; i++)
+				work.accept(i);
+		} else {
+			pool.submit(() -> IntStream.range(0, n).parallel().forEach(work)).join();
+		}
+	}
+
+	/** Steps until everybody is done or we hit the step limit (note a step is a third of a cycle). */
+	public void run(int maxSteps) {
+		int cycles = 0;
+		while(step() && cycles++ < maxSteps);
+	}
+
+	/** advance the simulation to the next stage (not necessarily a full timestep) */
+	public boolean step() {
+		TraceSink trace = world.getTrace();
+		if (step == SENSE) {
+			trace.event(TraceSink.PHASE, null, SENSE, Double.NaN);
+			forEachExplorer(i -> explorers.get(i).getSensorAction());
+		}
+		if (step == OBSERVE) {
+			trace.event(TraceSink.PHASE, null, OBSERVE, Double.NaN);
+			forEachExplorer(i -> {
+				Explorer e = explorers.get(i);
+				e.observe(world.getObservation(e.getLastSensorAction(), e.getId()));
+			});
+		}
+		if (step == ACT) {
+			trace.event(TraceSink.PHASE, null, ACT, Double.NaN);
+
+			pathLength++;
+			forEachExplorer(i -> {
+				Explorer e = explorers.get(i);
+				int id = e.getId();
+				world.advanceState(e.getAction(), id);
+				paths.get(e).add(world.getState(id));
+				reached[i] = world.targetReached(id);
+			});
+
+			// everybody has moved, now sort out who's done
+			List<Explorer> going = new ArrayList<>(explorers.size());
+			for (int i = 0; i < explorers.size(); i++) {
+				Explorer e = explorers.get(i);
+				if (reached[i]) {
+					trace.event(TraceSink.TARGET_REACHED, e, pathLength, Double.NaN);
+					finished.put(e, pathLength);
+				} else {
+					going.add(e);
+				}
+			}
+			explorers = going;
+
+			if (explorers.isEmpty())
+				step = 5;
+			else
+				step = -1;
+		}
+		step++;
+		return step < 6;
+	}
+
+	public ExplorerWorld getWorld() {
+		return world;
+	}
+
+	/** the explorers still looking for the target */
+	public List<Explorer> getExplorers() {
+		return explorers;
+	}
+
+	/** Returns how many steps e took to reach the target, or -1 if it hasn't (yet) */
+	public int getPathLength(Explorer e) {
+		Integer length = finished.get(e);
+		return (length == null)? -1 : length;
+	}
+
+	/** everywhere each explorer has been */
+	public Map<Explorer, List<int[]>> getPaths() {
+		return paths;
+	}
+}
@@ -0,0 +1,224 @@
+package explorer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A parameter sweep: every combination of map size, observation probability, explorer set and map density, with
+ * a batch of trials in each. Each combination (a cell of the sweep) comes out as a line like the old results file:
+ * the density, then each explorer's average path length. If there's more than one size, observation probability
+ * or explorer set, each group of densities gets a comment saying what it is and a couple of blank lines after, so
+ * gnuplot can pick them out with index.
+ *
+ * Given a checkpoint file, every cell's line gets written there (and synced to disk) as soon as the cell is done.
+ * Running the same sweep again with the same checkpoint skips the cells that are in it, so a sweep that got
+ * killed carries on where it left off. The checkpoint starts with a line recording the seed, number of trials and
+ * every other runner setting that affects the results (ExperimentRunner.getSettings), and it won't carry on from a
+ * checkpoint with different ones as the results wouldn't be comparable.
+ *
+ * If the runner is writing trial records, the checkpoint also keeps how long the records file was at the start and
+ * after each cell. Carrying on cuts the records back to the end of the last finished cell, so the trials of a cell
+ * that got killed halfway through don't end up in there twice.
+ *
+ * With setConfidence each cell gets as many trials as it needs for a confidence interval of a given width rather
+ * than a fixed number (see ExperimentRunner.runAdaptive), and the number of trials is the least each cell gets.
+ * @author mathewpaul1
+ *
+ */
+public class Sweep {
+
+	private List<int[]> sizes = new ArrayList<>();
+	private double[] observationProbabilities = {0.9};
+	private double[] densities;
+	private List<String[]> explorerSets = new ArrayList<>();
+	private int trials;
+	/** if more than 0, run cells until the 95% confidence interval is this wide either side (up to maxTrials) */
+	private double halfWidth = 0;
+	private int maxTrials;
+	/** where the records file ended after the last cell in the checkpoint, or -1 if it doesn't say (see readCheckpoint) */
+	private long recordsEnd = -1;
+
+	/** A sweep with trials trials per cell. By default it is the usual one: 7x7, all the explorers, densities 0.01 to 0.99 */
+	public Sweep(int trials) {
+		this.trials = trials;
+		sizes.add(new int[]{7, 7});
+		explorerSets.add(ExperimentRunner.EXPLORER_NAMES);
+		setDensities(0.01, 1, 0.01);
+	}
+
+	/** Sweep over the densities from, from+step, from+2*step... up to but not including to */
+	public void setDensities(double from, double to, double step) {
+		List<Double> list = new ArrayList<>();
+		for (int i = 0; from + i*step < to; i++)
+			list.add(from + i*step);
+		densities = new double[list.size()];
+		for (int i = 0; i < densities.length; i++)
+			densities[i] = list.get(i);
+	}
+
+	/** each element is {width, height} */
+	public void setSizes(List<int[]> sizes) {
+		this.sizes = new ArrayList<>(sizes);
+	}
+
+	public void setObservationProbabilities(double[] observationProbabilities) {
+		this.observationProbabilities = observationProbabilities.clone();
+	}
+
+	public void setExplorerSets(List<String[]> explorerSets) {
+		this.explorerSets = new ArrayList<>(explorerSets);
+	}
+
+	/** Gives each cell trials until every explorer's 95% confidence interval is within halfWidth either side of its
+	 *  average path length, or it has had maxTrials. 0 (the default) for a fixed number of trials */
+	public void setConfidence(double halfWidth, int maxTrials) {
+		this.halfWidth = halfWidth;
+		this.maxTrials = maxTrials;
+	}
+
+	/** how many cells there are altogether */
+	public int getCellCount() {
+		return sizes.size() * observationProbabilities.length * explorerSets.size() * densities.length;
+	}
+
+	/** what the checkpoint's first line has to be for this sweep (run by runner) to carry on from it */
+	private String header(ExperimentRunner runner) {
+		String header = "# sweep seed " + runner.getSeed() + " trials " + trials;
+		if (halfWidth > 0)
+			header += " ci " + halfWidth + " max " + maxTrials;
+		return header + " " + runner.getSettings();
+	}
+
+	/** the seed a checkpoint was written with, or null if there isn't one (or it didn't get that far) */
+	public static Long checkpointSeed(File checkpoint) throws IOException {
+		if (checkpoint.length() == 0)
+			return null;
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(checkpoint), StandardCharsets.UTF_8))) {
+			String[] header = in.readLine().split(" ");
+			if (!header[0].equals("#") || (header.length > 1 && !header[1].equals("sweep")))
+				throw new IOException(checkpoint + " isn't a sweep checkpoint");
+			if (header.length < 6) // killed while writing the header
+				return null;
+			return Long.parseLong(header[3]);
+		}
+	}
+
+	/**
+	 * Runs every cell that isn't already in the checkpoint, writing all of them (old and new, in order) to out.
+	 * @param runner - runs the trials. Its size, observation probability and explorers get changed as we go
+	 * @param checkpoint - where to keep track of finished cells, or null to not bother
+	 */
+	public void run(ExperimentRunner runner, File checkpoint, Writer out) throws IOException {
+		recordsEnd = -1;
+		Map<String, String> done = (checkpoint == null)? new HashMap<String, String>() : readCheckpoint(checkpoint, runner);
+		TrialRecordWriter records = runner.getRecords();
+		FileOutputStream journal = (checkpoint == null)? null : new FileOutputStream(checkpoint, true);
+		try {
+			if (journal != null && checkpoint.length() == 0)
+				append(journal, header(runner));
+			if (journal != null && records != null) {
+				if (recordsEnd >= 0) {
+					records.truncate(recordsEnd); // anything after is from a cell that didn't finish
+				} else if (done.isEmpty()) {
+					append(journal, "# records " + records.length());
+				} else {
+					throw new IOException(checkpoint + " doesn't say where its cells' records end, so can't carry on from it with records");
+				}
+			}
+			boolean groups = getCellCount() > densities.length;
+			for (int[] size : sizes) {
+				for (double observationProbability : observationProbabilities) {
+					for (String[] explorers : explorerSets) {
+						String group = size[0] + "x" + size[1] + " " + observationProbability + " " + String.join(",", explorers);
+						if (groups)
+							out.write("# " + group + "\n");
+						for (double mapProb : densities) {
+							String key = group + " " + mapProb;
+							String line = done.get(key);
+							if (line == null) {
+								runner.setSize(size[0], size[1]);
+								runner.setObservationProbability(observationProbability);
+								runner.setExplorers(explorers);
+								List<Result> results = (halfWidth > 0)? runner.runAdaptive(mapProb, halfWidth, trials, maxTrials) : runner.run(trials, mapProb);
+								line = cellLine(mapProb, results);
+								if (journal != null)
+									append(journal, key + "\t" + line + ((records == null)? "" : "\t" + records.length()));
+							}
+							out.write(line + "\n");
+							out.flush();
+						}
+						if (groups)
+							out.write("\n\n");
+					}
+				}
+			}
+		} finally {
+			if (journal != null)
+				journal.close();
+		}
+	}
+
+	/** the density followed by the average path length of each explorer */
+	private static String cellLine(double mapProb, List<Result> results) {
+		StringBuilder line = new StringBuilder(Double.toString(mapProb));
+		for (Result r : results)
+			line.append(' ').append(r.averagePathLength);
+		return line.toString();
+	}
+
+	/** Writes a line to the checkpoint and waits until it is really on the disk */
+	private static void append(FileOutputStream journal, String line) throws IOException {
+		journal.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+		journal.getFD().sync();
+	}
+
+	/**
+	 * Reads the finished cells from a checkpoint, keyed by what cell they are, and sets recordsEnd if it says where
+	 * the records got to. If the last line was never finished (we died halfway through writing it) it gets cut off,
+	 * so the next one starts on a fresh line.
+	 */
+	private Map<String, String> readCheckpoint(File checkpoint, ExperimentRunner runner) throws IOException {
+		Map<String, String> done = new HashMap<>();
+		if (checkpoint.length() == 0)
+			return done;
+		byte[] contents;
+		try (RandomAccessFile file = new RandomAccessFile(checkpoint, "rw")) {
+			contents = new byte[(int) file.length()];
+			file.readFully(contents);
+			int end = contents.length;
+			while (end > 0 && contents[end-1] != '\n')
+				end--;
+			if (end < contents.length) {
+				file.setLength(end);
+				contents = Arrays.copyOf(contents, end);
+			}
+		}
+		if (contents.length == 0) // didn't even get the header down
+			return done;
+		String[] lines = new String(contents, StandardCharsets.UTF_8).split("\n");
+		if (!lines[0].equals(header(runner)))
+			throw new IOException(checkpoint + " is from a different sweep (it starts \"" + lines[0] + "\", expected \"" + header(runner) + "\")");
+		for (int i = 1; i < lines.length; i++) {
+			String[] fields = lines[i].split("\t");
+			if (fields.length >= 2)
+				done.put(fields[0], fields[1]);
+			if (fields.length >= 3)
+				recordsEnd = Long.parseLong(fields[2]);
+			else if (lines[i].startsWith("# records "))
+				recordsEnd = Long.parseLong(lines[i].substring("# records ".length()));
+		}
+		return done;
+	}
+}
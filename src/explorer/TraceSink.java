@@ -0,0 +1,93 @@
+package explorer;
+
+/**
+ * Where the explorers and the simulation report what they are doing. Events are just a kind, the explorer
+ * responsible and a couple of numbers -- no strings get built unless a sink actually wants to print them --
+ * and each kind of event has a level, so anything below the sink's level is dropped straight away.
+ * The default sink, NONE, drops everything, which costs about as much as an empty method call.
+ *
+ * A sink shared by trials running at once can hand each one its own view with forTrial, so that every event it
+ * records says which trial it came from.
+ * @author mathewpaul1
+ *
+ */
+public abstract class TraceSink {
+
+	/** Levels. A sink records events at or below its level */
+	public static final int OFF = 0;
+	public static final int INFO = 1;
+	public static final int DEBUG = 2;
+
+	/** An explorer chose a sensor action. value = the action, score = how good it thought it was */
+	public static final int SENSOR_ACTION = 0;
+	/** One of the sensor actions an explorer considered (DEBUG). value = the action, score = its score */
+	public static final int SENSOR_CANDIDATE = 1;
+	/** An explorer got an observation. value = the observation, score = anything it wants to report (or NaN) */
+	public static final int OBSERVATION = 2;
+	/** An explorer chose an action. value = the action, score = its expected value (or NaN) */
+	public static final int ACTION = 3;
+	/** An explorer found the target. value = how many steps it took */
+	public static final int TARGET_REACHED = 4;
+	/** The simulation moved on to another phase (DEBUG). value = the phase, no explorer */
+	public static final int PHASE = 5;
+
+	/** the level of each kind of event */
+	private static final int[] LEVELS = {INFO, DEBUG, INFO, INFO, INFO, DEBUG};
+
+	/** Throws everything away */
+	public static final TraceSink NONE = new TraceSink(OFF) {
+		@Override
+		protected void record(int trial, int kind, Explorer source, int value, double score) {
+		}
+	};
+
+	private final int level;
+	/** the trial events get put down to, or -1 if nobody said */
+	private final int trial;
+
+	protected TraceSink(int level) {
+		this(level, -1);
+	}
+
+	private TraceSink(int level, int trial) {
+		this.level = level;
+		this.trial = trial;
+	}
+
+	/** would an event of this kind get recorded? Only needed if working out the event is expensive */
+	public final boolean isEnabled(int kind) {
+		return LEVELS[kind] <= level;
+	}
+
+	/**
+	 * Reports an event, if this sink is interested in its level.
+	 * @param kind - one of the event kinds above
+	 * @param source - the explorer responsible (null for simulation events)
+	 * @param value - an action, observation or count, depending on the kind
+	 * @param score - a value to go with it, or NaN
+	 */
+	public final void event(int kind, Explorer source, int value, double score) {
+		if (LEVELS[kind] <= level)
+			record(trial, kind, source, value, score);
+	}
+
+	/** A view of this sink that records everything reported to it as coming from the given trial */
+	public TraceSink forTrial(int trial) {
+		if (level == OFF)
+			return this;
+		TraceSink parent = this;
+		return new TraceSink(level, trial) {
+			@Override
+			protected void record(int trial, int kind, Explorer source, int value, double score) {
+				parent.record(trial, kind, source, value, score);
+			}
+		};
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	/** actually does something with an event that got through. trial is -1 if it isn't known */
+	protected abstract void record(int trial, int kind, Explorer source, int value, double score);
+}
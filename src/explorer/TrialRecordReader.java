@@ -0,0 +1,188 @@
+package explorer;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads back what TrialRecordWriter wrote (see there for the format). A record cut short at the end of the file,
+ * as happens if the sweep was killed halfway through writing one, is treated as the end.
+ *
+ * Run on its own it prints the statistics for each density and explorer in a records file:
+ *     java explorer.TrialRecordReader records
+ * @author mathewpaul1
+ *
+ */
+public class TrialRecordReader implements Closeable {
+
+	private final DataInputStream in;
+	private final String[] explorers;
+
+	/** the record we just read */
+	private int width, height;
+	private double observationProbability;
+	private double mapProb;
+	private int trial;
+	private long seed;
+	private int[] lengths;
+	/** how far into the file the header and the complete records we've read go */
+	private long position;
+
+	public TrialRecordReader(File file) throws IOException {
+		in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		if (in.readInt() != TrialRecordWriter.MAGIC) {
+			in.close();
+			throw new IOException(file + " isn't a trial records file");
+		}
+		int version = in.readInt();
+		if (version != TrialRecordWriter.VERSION) {
+			in.close();
+			throw new IOException(file + " is version " + version + ", we can only read " + TrialRecordWriter.VERSION);
+		}
+		explorers = new String[in.readInt()];
+		position = 3*4;
+		for (int e = 0; e < explorers.length; e++) {
+			explorers[e] = in.readUTF();
+			position += 2 + utfLength(explorers[e]);
+		}
+	}
+
+	/** how many bytes writeUTF takes for s, not counting the length at the front */
+	private static int utfLength(String s) {
+		int length = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			length += (c >= 1 && c <= 0x7f)? 1 : (c <= 0x7ff)? 2 : 3;
+		}
+		return length;
+	}
+
+	/** the size of the world the current record's trial was in */
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/** the explorer names from the header, in the order their path lengths come in */
+	public String[] getExplorers() {
+		return explorers.clone();
+	}
+
+	/** Moves on to the next record, returning false if there aren't any more (complete ones, anyway) */
+	public boolean next() throws IOException {
+		try {
+			int w = in.readInt();
+			int h = in.readInt();
+			double o = in.readDouble();
+			double p = in.readDouble();
+			int t = in.readInt();
+			long s = in.readLong();
+			int[] l = new int[in.readInt()];
+			for (int e = 0; e < l.length; e++)
+				l[e] = in.readInt();
+			width = w;
+			height = h;
+			observationProbability = o;
+			mapProb = p;
+			trial = t;
+			seed = s;
+			lengths = l;
+			position += 4 + 4 + 8 + 8 + 4 + 8 + 4 + 4*l.length;
+			return true;
+		} catch (EOFException e) {
+			return false;
+		}
+	}
+
+	public double getObservationProbability() {
+		return observationProbability;
+	}
+
+	public double getMapProb() {
+		return mapProb;
+	}
+
+	public int getTrial() {
+		return trial;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/** the path length of each explorer in the current record, -1 if it didn't make it and -2 if it wasn't run */
+	public int[] getLengths() {
+		return lengths;
+	}
+
+	/** how much of the file has been read, in whole records. Anything past that once next() is false is a broken record */
+	public long getPosition() {
+		return position;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/**
+	 * Reads the whole file into a Result per explorer for each cell of the sweep (size, observation probability and
+	 * density, written like "7x7 0.9 0.01"), in the order they first turn up. A sweep that was killed and carried
+	 * on (see Sweep) runs the cell it was in the middle of again, so trials we've already seen are skipped.
+	 */
+	public static Map<String, List<Result>> summarise(File file) throws IOException {
+		Map<String, List<Result>> summary = new LinkedHashMap<>();
+		Set<String> seen = new HashSet<>();
+		try (TrialRecordReader reader = new TrialRecordReader(file)) {
+			String[] names = reader.getExplorers();
+			while (reader.next()) {
+				String cell = reader.getWidth() + "x" + reader.getHeight() + " " + reader.getObservationProbability() + " " + reader.getMapProb();
+				if (!seen.add(cell + " " + reader.getTrial()))
+					continue;
+				List<Result> results = summary.get(cell);
+				if (results == null) {
+					results = new ArrayList<>();
+					for (String name : names)
+						results.add(new Result(name));
+					summary.put(cell, results);
+				}
+				int[] l = reader.getLengths();
+				for (int e = 0; e < l.length; e++) {
+					Result r = results.get(e % names.length);
+					if (l[e] == -2) // dropped out of an adaptive run
+						continue;
+					if (l[e] == -1)
+						r.addFailure();
+					else
+						r.add(l[e]);
+				}
+			}
+		}
+		return summary;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("usage: TrialRecordReader file");
+			System.exit(1);
+		}
+		for (Map.Entry<String, List<Result>> cell : summarise(new File(args[0])).entrySet()) {
+			System.out.println(cell.getKey());
+			for (Result r : cell.getValue())
+				System.out.print(r);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package explorer;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+/**
+ * Writes one small binary record per trial as the trials finish, so a long sweep can be watched (or picked over
+ * afterwards) without waiting for it to end, and nothing is lost but the trials in flight if it dies. The file is
+ * only ever appended to (or cut back with truncate). It starts with a header:
+ *     int magic, int version, int explorer count, then each explorer's name (writeUTF)
+ * followed by any number of records:
+ *     int width, int height, double observationProbability, double mapProb, int trial, long world seed,
+ *     int count, then count path lengths (ints, -1 for didn't make it, -2 for wasn't run in this trial)
+ * so a sweep over sizes and observation probabilities can go in one file (as long as the explorers stay the same).
+ * With several copies of each explorer the count is a multiple of the explorer count, a whole set per copy.
+ * Everything is big-endian, as DataOutputStream does it. TrialRecordReader reads it back.
+ * @author mathewpaul1
+ *
+ */
+public class TrialRecordWriter implements Closeable {
+
+	static final int MAGIC = 0x45585452; // "EXTR"
+	static final int VERSION = 2;
+
+	private final FileOutputStream file;
+	private final DataOutputStream out;
+
+	/**
+	 * Opens file for appending. If it is new (or empty) the header gets written, otherwise the header that's there
+	 * has to match, so that records from different sorts of sweep don't end up mixed together. A broken record at
+	 * the end (from being killed halfway through writing it) gets cut off first.
+	 */
+	public TrialRecordWriter(File file, String[] explorers) throws IOException {
+		boolean fresh = file.length() == 0;
+		if (!fresh) {
+			long complete;
+			try (TrialRecordReader existing = new TrialRecordReader(file)) {
+				if (!Arrays.equals(existing.getExplorers(), explorers))
+					throw new IOException(file + " has records from a different setup");
+				while (existing.next());
+				complete = existing.getPosition();
+			}
+			if (complete < file.length()) {
+				try (RandomAccessFile truncate = new RandomAccessFile(file, "rw")) {
+					truncate.setLength(complete);
+				}
+			}
+		}
+		this.file = new FileOutputStream(file, true);
+		out = new DataOutputStream(new BufferedOutputStream(this.file));
+		if (fresh) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(explorers.length);
+			for (String name : explorers)
+				out.writeUTF(name);
+			out.flush();
+		}
+	}
+
+	/** Appends one trial's results and flushes them out to the file */
+	public void write(int width, int height, double observationProbability, double mapProb, int trial, long seed, int[] lengths) throws IOException {
+		out.writeInt(width);
+		out.writeInt(height);
+		out.writeDouble(observationProbability);
+		out.writeDouble(mapProb);
+		out.writeInt(trial);
+		out.writeLong(seed);
+		out.writeInt(lengths.length);
+		for (int length : lengths)
+			out.writeInt(length);
+		out.flush();
+	}
+
+	/** how long the file is, with everything written so far in it */
+	public long length() throws IOException {
+		out.flush();
+		return file.getChannel().size();
+	}
+
+	/**
+	 * Cuts the file back to length bytes (as returned by length earlier), throwing away the records written since.
+	 * For when the trials they are from are going to be run again.
+	 */
+	public void truncate(long length) throws IOException {
+		out.flush();
+		file.getChannel().truncate(length);
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
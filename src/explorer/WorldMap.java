@@ -0,0 +1,104 @@
+package explorer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A map packed into 2 bits a cell (EMPTY, FULL or TARGET, as in ExplorerWorld), four cells to a byte, with cells
+ * flattened as x*h + y like everywhere else and the first cell in the lowest bits. Also knows where the target is.
+ *
+ * The cells live in a ByteBuffer so that a map can just be a view of part of a memory-mapped MapCorpus file,
+ * without copying. Those are read-only; ones made with the constructor can be written to.
+ * @author mathewpaul1
+ *
+ */
+public class WorldMap {
+
+	private final int width, height;
+	private final ByteBuffer cells;
+	private int targetX, targetY;
+
+	/** An empty (all EMPTY) w by h map, with the target nowhere until setTarget */
+	public WorldMap(int width, int height) {
+		this(width, height, -1, -1, ByteBuffer.allocate(bytesFor(width, height)));
+	}
+
+	/** a map over some packed cells that already exist, eg. in a corpus */
+	WorldMap(int width, int height, int targetX, int targetY, ByteBuffer cells) {
+		this.width = width;
+		this.height = height;
+		this.targetX = targetX;
+		this.targetY = targetY;
+		this.cells = cells;
+	}
+
+	/** how many bytes the cells of a w by h map take */
+	public static int bytesFor(int width, int height) {
+		return (int) (((long) width*height + 3) / 4);
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int get(int x, int y) {
+		return get(x*height + y);
+	}
+
+	/** the cell by flat index */
+	public int get(int i) {
+		return (cells.get(i >>> 2) >>> ((i & 3) << 1)) & 3;
+	}
+
+	public void set(int x, int y, int value) {
+		set(x*height + y, value);
+	}
+
+	public void set(int i, int value) {
+		int shift = (i & 3) << 1;
+		int b = cells.get(i >>> 2);
+		cells.put(i >>> 2, (byte) ((b & ~(3 << shift)) | (value << shift)));
+	}
+
+	/**
+	 * Sets four cells at once, i to i+3, from the low 8 bits of packed (laid out like the cells are). i has to be a
+	 * multiple of 4. For generators that make cells in order, it saves a read-modify-write for every one.
+	 */
+	public void setPacked(int i, int packed) {
+		cells.put(i >>> 2, (byte) packed);
+	}
+
+	/** Puts the target at (x,y), marking the cell TARGET */
+	public void setTarget(int x, int y) {
+		targetX = x;
+		targetY = y;
+		set(x, y, ExplorerWorld.TARGET);
+	}
+
+	public int getTargetX() {
+		return targetX;
+	}
+
+	public int getTargetY() {
+		return targetY;
+	}
+
+	/** the packed cells, positioned at the start. Shares them with this map */
+	ByteBuffer cells() {
+		ByteBuffer view = cells.duplicate();
+		view.clear();
+		return view;
+	}
+
+	/** Unpacks into a new [x][y] array */
+	public int[][] toArray() {
+		int[][] map = new int[width][height];
+		for (int x = 0; x < width; x++)
+			for (int y = 0; y < height; y++)
+				map[x][y] = get(x, y);
+		return map;
+	}
+}